@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+
+import static com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import static com.example.android.sunshine.utils.PollingCheck.check;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Checks that {@link ForecastRepository} follows the content of the weather table, and that a
+ * new observer receives the forecast already in memory without waiting for another query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestForecastRepository {
+
+    private static final int DAYS = 5;
+    private static final long TIMEOUT = 5000;
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+    private final ForecastRepository mRepository = ForecastRepository.getInstance(mContext);
+
+    /* Records what the observer receives, read from the test thread */
+    private volatile ForecastSnapshot mObserved;
+
+    private final ForecastRepository.Observer mObserver = new ForecastRepository.Observer() {
+        @Override
+        public void onForecastChanged(ForecastSnapshot forecast) {
+            mObserved = forecast;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.observe(mObserver);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.removeObserver(mObserver);
+            }
+        });
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    @Test
+    public void testForecastFollowsProvider() throws Exception {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        ContentValues[] days = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherEntry.COLUMN_DATE, today + i * SunshineDateUtils.DAY_IN_MILLIS);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, 800);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 20 + i);
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, 10 - i);
+            values.put(WeatherEntry.COLUMN_HUMIDITY, 50);
+            values.put(WeatherEntry.COLUMN_PRESSURE, 1000);
+            values.put(WeatherEntry.COLUMN_WIND_SPEED, 2);
+            values.put(WeatherEntry.COLUMN_DEGREES, 90);
+            days[i] = values;
+        }
+
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, days);
+
+        check("Forecast wasn't reloaded after the insert", TIMEOUT, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                ForecastSnapshot forecast = mObserved;
+                return forecast != null && forecast.size() == DAYS;
+            }
+        });
+
+        ForecastSnapshot forecast = mObserved;
+        for (int i = 0; i < DAYS; i++) {
+            assertEquals("Days out of order",
+                    today + i * SunshineDateUtils.DAY_IN_MILLIS, forecast.getDate(i));
+            assertEquals("Wrong high temperature", 20.0 + i, forecast.getMaxTemp(i));
+        }
+
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+
+        check("Forecast wasn't reloaded after the delete", TIMEOUT, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mObserved.size() == 0;
+            }
+        });
+    }
+
+    @Test
+    public void testNewObserverReceivesForecastInMemory() throws Exception {
+        check("Forecast was never loaded", TIMEOUT, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mRepository.getForecast() != null;
+            }
+        });
+
+        final ForecastSnapshot[] delivered = new ForecastSnapshot[1];
+        final ForecastRepository.Observer observer = new ForecastRepository.Observer() {
+            @Override
+            public void onForecastChanged(ForecastSnapshot forecast) {
+                delivered[0] = forecast;
+            }
+        };
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.observe(observer);
+                mRepository.removeObserver(observer);
+            }
+        });
+
+        assertSame("The forecast in memory should be delivered from observe",
+                mRepository.getForecast(), delivered[0]);
+    }
+}
@@ -37,6 +37,7 @@ public class TestUriMatcher {
     private static final Uri TEST_WEATHER_DIR = WeatherContract.WeatherEntry.CONTENT_URI;
     private static final Uri TEST_WEATHER_WITH_DATE_DIR = WeatherContract.WeatherEntry
             .buildWeatherUriWithDate(TestUtilities.DATE_NORMALIZED);
+    private static final Uri TEST_SYNC_JOURNAL_DIR = WeatherContract.SyncJournalEntry.CONTENT_URI;
 
     private static final String weatherCodeVariableName = "CODE_WEATHER";
     private static int REFLECTED_WEATHER_CODE;
@@ -44,6 +45,9 @@ public class TestUriMatcher {
     private static final String weatherCodeWithDateVariableName = "CODE_WEATHER_WITH_DATE";
     private static int REFLECTED_WEATHER_WITH_DATE_CODE;
 
+    private static final String syncJournalCodeVariableName = "CODE_SYNC_JOURNAL";
+    private static int REFLECTED_SYNC_JOURNAL_CODE;
+
     private UriMatcher testMatcher;
 
     @Before
@@ -61,6 +65,10 @@ public class TestUriMatcher {
                     WeatherProvider.class,
                     weatherCodeWithDateVariableName);
 
+            REFLECTED_SYNC_JOURNAL_CODE = getStaticIntegerField(
+                    WeatherProvider.class,
+                    syncJournalCodeVariableName);
+
         } catch (NoSuchFieldException e) {
             fail(studentReadableNoSuchField(e));
         } catch (IllegalAccessException e) {
@@ -101,5 +109,14 @@ public class TestUriMatcher {
         assertEquals(weatherWithDateUriCodeDoesNotMatch,
                 expectedWeatherWithDateCode,
                 actualWeatherWithDateCode);
+
+        /* Test that the code returned from our matcher matches the expected sync journal code */
+        String syncJournalUriCodeDoesNotMatch =
+                "Error: The CODE_SYNC_JOURNAL URI was matched incorrectly.";
+        int actualSyncJournalCode = testMatcher.match(TEST_SYNC_JOURNAL_DIR);
+        int expectedSyncJournalCode = REFLECTED_SYNC_JOURNAL_CODE;
+        assertEquals(syncJournalUriCodeDoesNotMatch,
+                expectedSyncJournalCode,
+                actualSyncJournalCode);
     }
 }
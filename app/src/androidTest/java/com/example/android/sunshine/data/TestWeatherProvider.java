@@ -27,6 +27,8 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,6 +36,7 @@ import org.junit.runner.RunWith;
 import static com.example.android.sunshine.data.TestUtilities.BULK_INSERT_RECORDS_TO_INSERT;
 import static com.example.android.sunshine.data.TestUtilities.createBulkInsertTestWeatherValues;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
@@ -423,6 +426,152 @@ public class TestWeatherProvider {
         shouldBeEmptyCursor.close();
     }
 
+    /**
+     * This test stores a 16 day prefetch, plus a day that has already passed, then replaces the
+     * days a 7 day sync fetched the way SunshineSyncTask does. The past day should be gone, the
+     * first 7 days should hold the new weather, and the 9 days after them should be kept.
+     */
+    @Test
+    public void testShortSyncKeepsLaterDays() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        long day = SunshineDateUtils.DAY_IN_MILLIS;
+
+        int prefetchDays = 16;
+        ContentValues[] prefetch = new ContentValues[prefetchDays + 1];
+        for (int i = 0; i < prefetch.length; i++) {
+            /* Starts yesterday */
+            prefetch[i] = createWeatherValues(today + (i - 1) * day, 10);
+        }
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, prefetch);
+
+        int syncDays = 7;
+        ContentValues[] sync = new ContentValues[syncDays];
+        for (int i = 0; i < syncDays; i++) {
+            sync[i] = createWeatherValues(today + i * day, 20);
+        }
+        int deleted = contentResolver.delete(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.getSqlSelectForReplacedDays(
+                        today, today, today + (syncDays - 1) * day),
+                null);
+        assertEquals("Error: Unexpected number of days replaced", syncDays + 1, deleted);
+        contentResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, sync);
+
+        Cursor cursor = contentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                new String[]{WeatherContract.WeatherEntry.COLUMN_DATE,
+                        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP},
+                null,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        assertNotNull("Cursor was null.", cursor);
+        assertEquals("Error: The days after the sync's weren't kept",
+                prefetchDays,
+                cursor.getCount());
+
+        for (int i = 0; cursor.moveToNext(); i++) {
+            assertEquals("Error: Day " + i + " is missing", today + i * day, cursor.getLong(0));
+            assertEquals("Error: Day " + i + " doesn't hold the latest weather",
+                    i < syncDays ? 20.0 : 10.0,
+                    cursor.getDouble(1));
+        }
+
+        cursor.close();
+    }
+
+    /**
+     * This test writes through {@link WeatherContract.WeatherEntry#CONTENT_URI_WITHOUT_NOTIFY},
+     * as SunshineSyncTask does, and checks that observers of the weather table aren't notified.
+     */
+    @Test
+    public void testWritesWithoutNotifyDontNotify() throws InterruptedException {
+        ContentResolver contentResolver = mContext.getContentResolver();
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        contentResolver.registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, weatherObserver);
+
+        int inserted = contentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI_WITHOUT_NOTIFY,
+                createBulkInsertTestWeatherValues());
+        assertEquals("Error: Days weren't inserted", BULK_INSERT_RECORDS_TO_INSERT, inserted);
+        int deleted = contentResolver.delete(
+                WeatherContract.WeatherEntry.CONTENT_URI_WITHOUT_NOTIFY, null, null);
+        assertEquals("Error: Days weren't deleted", BULK_INSERT_RECORDS_TO_INSERT, deleted);
+
+        /* Give a notification the time it would take to arrive */
+        Thread.sleep(500);
+        contentResolver.unregisterContentObserver(weatherObserver);
+        weatherObserver.mHT.quit();
+
+        assertFalse("Error: Observers were notified of writes made without notify",
+                weatherObserver.mContentChanged);
+    }
+
+    private static ContentValues createWeatherValues(long date, double maxTemp) {
+        ContentValues weatherValues = TestUtilities.createTestWeatherContentValues();
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        return weatherValues;
+    }
+
+    /**
+     * This test inserts more sync journal entries than the journal is allowed to keep and checks
+     * that only the most recent {@link WeatherContract.SyncJournalEntry#MAX_ENTRIES} are kept.
+     */
+    @Test
+    public void testSyncJournalIsBounded() {
+        ContentResolver contentResolver = mContext.getContentResolver();
+
+        int entriesToInsert = WeatherContract.SyncJournalEntry.MAX_ENTRIES + 5;
+        for (int i = 0; i < entriesToInsert; i++) {
+            ContentValues journalValues = new ContentValues();
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_STARTED_AT, i);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_SYNC_MODE,
+                    WeatherContract.SyncJournalEntry.MODE_REGULAR);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_METERED, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_DAYS_REQUESTED, 14);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_OUTCOME,
+                    WeatherContract.SyncJournalEntry.OUTCOME_SUCCESS);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_LOCK_WAIT_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_TOTAL_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_FETCH_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_PARSE_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_PERSIST_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_WEAR_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_NOTIFY_MILLIS, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_RESPONSE_LENGTH, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_PARSED, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_DELETED, 0);
+            journalValues.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_INSERTED, 0);
+
+            Uri entryUri = contentResolver.insert(
+                    WeatherContract.SyncJournalEntry.CONTENT_URI,
+                    journalValues);
+            assertNotNull("Unable to insert sync journal entry " + i, entryUri);
+        }
+
+        Cursor journalCursor = contentResolver.query(
+                WeatherContract.SyncJournalEntry.CONTENT_URI,
+                new String[]{WeatherContract.SyncJournalEntry.COLUMN_STARTED_AT},
+                null,
+                null,
+                null);
+
+        assertNotNull("Cursor was null.", journalCursor);
+        assertEquals("Error: The sync journal kept more entries than MAX_ENTRIES",
+                WeatherContract.SyncJournalEntry.MAX_ENTRIES,
+                journalCursor.getCount());
+
+        /* The most recent entry should come first */
+        assertTrue(journalCursor.moveToFirst());
+        assertEquals("Error: The sync journal didn't return the most recent entry first",
+                entriesToInsert - 1,
+                journalCursor.getLong(0));
+
+        journalCursor.close();
+    }
+
     /**
      * This method will clear all rows from the weather table in our database.
      * <p>
@@ -442,6 +591,7 @@ public class TestWeatherProvider {
 
         /* The delete method deletes all of the desired rows from the table, not the table itself */
         database.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+        database.delete(WeatherContract.SyncJournalEntry.TABLE_NAME, null, null);
 
         /* Always close the database when you're through with it */
         database.close();
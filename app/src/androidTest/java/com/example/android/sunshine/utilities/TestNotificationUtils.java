@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.data.SunshinePreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+
+import static com.example.android.sunshine.utils.PollingCheck.check;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that the weather notification can be built for every weather art, which are vector
+ * drawables on API 21 and up, and that quick updates coalesce into a single post.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TestNotificationUtils {
+
+    private static final int[] LARGE_ART_IDS = {
+            R.drawable.art_clear, R.drawable.art_clouds, R.drawable.art_fog,
+            R.drawable.art_light_clouds, R.drawable.art_light_rain, R.drawable.art_rain,
+            R.drawable.art_snow, R.drawable.art_storm
+    };
+
+    private final Context mContext = InstrumentationRegistry.getTargetContext();
+
+    private long mLastNotificationTime;
+
+    @Before
+    public void setUp() {
+        mLastNotificationTime = SunshinePreferences.getLastNotificationTimeInMillis(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        NotificationManager notificationManager = (NotificationManager)
+                mContext.getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.cancelAll();
+        SunshinePreferences.saveLastNotificationTime(mContext, mLastNotificationTime);
+    }
+
+    @Test
+    public void testLargeIconRendersEveryArt() {
+        Resources resources = mContext.getResources();
+        int width = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        int height = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+
+        for (int artId : LARGE_ART_IDS) {
+            Bitmap largeIcon = NotificationUtils.getLargeIcon(mContext, artId);
+            String name = resources.getResourceEntryName(artId);
+            assertNotNull("No large icon for " + name, largeIcon);
+            assertEquals("Wrong large icon width for " + name, width, largeIcon.getWidth());
+            assertEquals("Wrong large icon height for " + name, height, largeIcon.getHeight());
+        }
+    }
+
+    @Test
+    public void testQuickUpdatesCoalesceIntoOnePost() throws Exception {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        SunshinePreferences.saveLastNotificationTime(mContext, 0);
+
+        NotificationUtils.notifyUserOfNewWeather(mContext, forecastForToday(today, 800));
+        NotificationUtils.notifyUserOfNewWeather(mContext, forecastForToday(today, 500));
+
+        /* Posting saves the time of the notification */
+        check("The queued notification wasn't posted", 5000, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return SunshinePreferences.getLastNotificationTimeInMillis(mContext) != 0;
+            }
+        });
+        assertFalse("Coalesced updates should only be posted once",
+                NotificationUtils.postQueuedNotification(mContext));
+    }
+
+    @Test
+    public void testPostTakesTheQueuedWeatherOnce() {
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+
+        NotificationUtils.notifyUserOfNewWeather(mContext, forecastForToday(today, 800));
+
+        /* Posted right away, ahead of the post thread */
+        assertTrue("The queued notification wasn't posted",
+                NotificationUtils.postQueuedNotification(mContext));
+        assertFalse("A notification should only be posted once",
+                NotificationUtils.postQueuedNotification(mContext));
+    }
+
+    private static ForecastSnapshot forecastForToday(long today, int weatherId) {
+        return new ForecastSnapshot(new long[]{today}, new int[]{weatherId},
+                new double[]{20}, new double[]{10}, new double[]{50}, new double[]{1000},
+                new double[]{2}, new double[]{90});
+    }
+}
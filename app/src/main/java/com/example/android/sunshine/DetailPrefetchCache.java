@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+
+/**
+ * Holds formatted {@link DetailRow}s for the days around the ones visible in the forecast list,
+ * so that tapping a day can show its details straight away, without waiting for a query.
+ * <p>
+ * The cache belongs to the forecast currently displayed by the list. When the list moves to a
+ * new forecast, the cache is emptied and filled again from the new one.
+ */
+final class DetailPrefetchCache {
+
+    /* How many days beyond each end of the visible range are prefetched */
+    static final int PREFETCH_DISTANCE = 3;
+
+    private static final Object sLock = new Object();
+
+    /* Guarded by sLock */
+    private static ForecastSnapshot sForecast;
+    private static final LongSparseArray<DetailRow> sRows = new LongSparseArray<>();
+
+    private DetailPrefetchCache() {
+    }
+
+    /**
+     * Returns the prefetched details of a day, if they are still valid.
+     *
+     * @param context  Used to check the rows were formatted for the current preferences
+     * @param forecast The forecast the details must come from
+     * @param date     Normalized date of the day
+     * @return The details, or null if they haven't been prefetched from that forecast
+     */
+    static DetailRow get(Context context, ForecastSnapshot forecast, long date) {
+        DetailRow row;
+        synchronized (sLock) {
+            if (sForecast != forecast) return null;
+            row = sRows.get(date);
+        }
+        return (row != null && row.isCurrent(context)) ? row : null;
+    }
+
+    /**
+     * Prefetches the days from first to last position of a forecast, plus PREFETCH_DISTANCE on
+     * either side. Formatting happens on a background thread.
+     *
+     * @param context  Used to format the rows
+     * @param forecast The forecast displayed by the list
+     * @param first    Position of the first visible day
+     * @param last     Position of the last visible day
+     */
+    static void prefetch(Context context, final ForecastSnapshot forecast, int first, int last) {
+        final Context appContext = context.getApplicationContext();
+        final int from = Math.max(0, first - PREFETCH_DISTANCE);
+        final int to = Math.min(forecast.size() - 1, last + PREFETCH_DISTANCE);
+        if (from > to) return;
+
+        synchronized (sLock) {
+            if (sForecast != forecast) {
+                sForecast = forecast;
+                sRows.clear();
+            }
+        }
+
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                for (int position = from; position <= to; position++) {
+                    long date = forecast.getDate(position);
+
+                    synchronized (sLock) {
+                        /* The list has moved on to another forecast */
+                        if (sForecast != forecast) return null;
+                        DetailRow cached = sRows.get(date);
+                        if (cached != null && cached.isCurrent(appContext)) continue;
+                    }
+
+                    DetailRow row = DetailRow.build(appContext, forecast, position);
+
+                    synchronized (sLock) {
+                        if (sForecast != forecast) return null;
+                        sRows.put(date, row);
+                    }
+                }
+                return null;
+            }
+        }.execute();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.data.SunshinePreferences;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+import java.util.Locale;
+
+/**
+ * Everything {@link DetailActivity} displays for one day, already formatted. Building one does
+ * all the formatting work, so DetailActivity can show a prefetched row without doing any.
+ */
+final class DetailRow {
+
+    /* Normalized UTC date of this day */
+    final long date;
+
+    final int iconResId;
+
+    final String dateText;
+
+    final String description;
+    final String descriptionA11y;
+
+    final String highString;
+    final String highA11y;
+
+    final String lowString;
+    final String lowA11y;
+
+    final String humidityString;
+    final String humidityA11y;
+
+    final String windString;
+    final String windA11y;
+
+    final String pressureString;
+    final String pressureA11y;
+
+    /* A summary of the forecast that can be shared from DetailActivity */
+    final String forecastSummary;
+
+    /*
+     * The unit system, locale and day the Strings were formatted for. The day is the UTC day
+     * "Today" and "Tomorrow" are relative to, like the memo of SunshineDateUtils.
+     */
+    private final boolean mIsMetric;
+    private final Locale mLocale;
+    private final long mFormattedDay;
+
+    private DetailRow(Context context, long date, int weatherId, double high, double low,
+                      float humidity, float pressure, float windSpeed, float windDirection) {
+        this.date = date;
+
+        mIsMetric = SunshinePreferences.isMetric(context);
+        mLocale = Locale.getDefault();
+        mFormattedDay = getToday();
+
+        /* Use our utility method to determine the resource ID for the proper art */
+        iconResId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
+
+        /*
+         * The date is a GMT representation at midnight of the date when the weather information
+         * was loaded for. SunshineDateUtils#getFriendlyDateString adds the GMT offset for us.
+         */
+        dateText = SunshineDateUtils.getFriendlyDateString(context, date, true);
+
+        description = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+        /*
+         * If the user's preference for weather is fahrenheit, formatTemperature will convert
+         * the temperature. This method will also append either °C or °F to the temperature
+         * String.
+         */
+        highString = SunshineWeatherUtils.formatTemperature(context, high);
+        highA11y = context.getString(R.string.a11y_high_temp, highString);
+
+        lowString = SunshineWeatherUtils.formatTemperature(context, low);
+        lowA11y = context.getString(R.string.a11y_low_temp, lowString);
+
+        humidityString = context.getString(R.string.format_humidity, humidity);
+        humidityA11y = context.getString(R.string.a11y_humidity, humidityString);
+
+        windString = SunshineWeatherUtils.getFormattedWind(context, windSpeed, windDirection);
+        windA11y = context.getString(R.string.a11y_wind, windString);
+
+        pressureString = context.getString(R.string.format_pressure, pressure);
+        pressureA11y = context.getString(R.string.a11y_pressure, pressureString);
+
+        forecastSummary = String.format("%s - %s - %s/%s",
+                dateText, description, highString, lowString);
+    }
+
+    /**
+     * Formats one day of a forecast. This is too slow to do for many days on the main thread.
+     *
+     * @param context  Used for resources and the user's unit preference
+     * @param forecast The forecast holding the day
+     * @param position The position of the day in the forecast
+     * @return The formatted day
+     */
+    static DetailRow build(Context context, ForecastSnapshot forecast, int position) {
+        return new DetailRow(context,
+                forecast.getDate(position),
+                forecast.getWeatherId(position),
+                forecast.getMaxTemp(position),
+                forecast.getMinTemp(position),
+                (float) forecast.getHumidity(position),
+                (float) forecast.getPressure(position),
+                (float) forecast.getWindSpeed(position),
+                (float) forecast.getDegrees(position));
+    }
+
+    /**
+     * A prefetched row can outlive a change of units or locale, or the day its date was
+     * formatted relative to. Such a row must be formatted again before it is shown.
+     *
+     * @param context Used to read the user's unit preference
+     * @return true if the row was formatted for the current units, locale and day
+     */
+    boolean isCurrent(Context context) {
+        return mIsMetric == SunshinePreferences.isMetric(context)
+                && mLocale.equals(Locale.getDefault())
+                && mFormattedDay == getToday();
+    }
+
+    private static long getToday() {
+        return SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+    }
+}
@@ -16,8 +16,9 @@
 package com.example.android.sunshine;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -25,17 +26,19 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.android.sunshine.utilities.SunshineDateUtils;
-import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.utilities.StartupMetrics;
+
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from a {@link ForecastSnapshot} to a {@link android.support.v7.widget.RecyclerView}.
  */
 class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
-    private static final int VIEW_TYPE_TODAY = 0;
-    private static final int VIEW_TYPE_FUTURE_DAY = 1;
+    static final int VIEW_TYPE_TODAY = 0;
+    static final int VIEW_TYPE_FUTURE_DAY = 1;
 
     /* The context we use to utility methods, app resources and layout inflaters */
     private final Context mContext;
@@ -63,18 +66,55 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     private boolean mUseTodayLayout;
 
-    private Cursor mCursor;
+    /* Supplies views inflated in the background during startup, may be null */
+    private final ForecastViewPrewarmer mViewPrewarmer;
+
+    private static final ForecastRow[] NO_ROWS = new ForecastRow[0];
+
+    /* The rows currently displayed. Never modified once built, only replaced */
+    private ForecastRow[] mRows = NO_ROWS;
+
+    /* The forecast mRows were built from, null when there are no rows */
+    private ForecastSnapshot mForecast;
+
+    /* The RecyclerView we are attached to, used to find which days are on screen */
+    private RecyclerView mRecyclerView;
+
+    /*
+     * Prefetches the details of the days around the visible ones each time scrolling stops, so
+     * that DetailActivity can show them without a query.
+     */
+    private final RecyclerView.OnScrollListener mPrefetchOnScroll =
+            new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        prefetchVisibleDetails();
+                    }
+                }
+            };
+
+    /*
+     * Incremented each time a forecast is swapped in, so that rows built for an older forecast
+     * are recognized and dropped.
+     */
+    private int mGeneration;
+
+    private BuildRowsTask mPendingRowBuild;
 
     /**
      * Creates a ForecastAdapter.
      *
-     * @param context      Used to talk to the UI and app resources
-     * @param clickHandler The on-click handler for this adapter. This single handler is called
-     *                     when an item is clicked.
+     * @param context       Used to talk to the UI and app resources
+     * @param clickHandler  The on-click handler for this adapter. This single handler is called
+     *                      when an item is clicked.
+     * @param viewPrewarmer Views to use before inflating new ones, or null
      */
-    public ForecastAdapter(@NonNull Context context, ForecastAdapterOnClickHandler clickHandler) {
+    public ForecastAdapter(@NonNull Context context, ForecastAdapterOnClickHandler clickHandler,
+                           ForecastViewPrewarmer viewPrewarmer) {
         mContext = context;
         mClickHandler = clickHandler;
+        mViewPrewarmer = viewPrewarmer;
         mUseTodayLayout = mContext.getResources().getBoolean(R.bool.use_today_layout);
     }
 
@@ -91,30 +131,41 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public ForecastAdapterViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
+        long start = System.nanoTime();
+
+        /* Use a view inflated during startup if there is one left */
+        View view = mViewPrewarmer != null ? mViewPrewarmer.take(viewType) : null;
+        boolean prewarmed = view != null;
+
+        if (!prewarmed) {
+            view = LayoutInflater.from(mContext).inflate(getLayoutId(viewType), viewGroup, false);
+        }
+
+        view.setFocusable(true);
 
-        int layoutId;
+        StartupMetrics.viewHolderCreated(prewarmed, System.nanoTime() - start);
 
+        return new ForecastAdapterViewHolder(view);
+    }
+
+    /**
+     * @param viewType The view type of a row
+     * @return The layout inflated for that view type
+     */
+    static int getLayoutId(int viewType) {
         switch (viewType) {
 
             case VIEW_TYPE_TODAY: {
-                layoutId = R.layout.list_item_forecast_today;
-                break;
+                return R.layout.list_item_forecast_today;
             }
 
             case VIEW_TYPE_FUTURE_DAY: {
-                layoutId = R.layout.forecast_list_item;
-                break;
+                return R.layout.forecast_list_item;
             }
 
             default:
                 throw new IllegalArgumentException("Invalid view type, value of " + viewType);
         }
-
-        View view = LayoutInflater.from(mContext).inflate(layoutId, viewGroup, false);
-
-        view.setFocusable(true);
-
-        return new ForecastAdapterViewHolder(view);
     }
 
     /**
@@ -122,6 +173,8 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * position. In this method, we update the contents of the ViewHolder to display the weather
      * details for this particular position, using the "position" argument that is conveniently
      * passed into us.
+     * <p>
+     * Every String was formatted when the rows were built, so binding only assigns them.
      *
      * @param forecastAdapterViewHolder The ViewHolder which should be updated to represent the
      *                                  contents of the item at the given position in the data set.
@@ -129,90 +182,70 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
+        ForecastRow row = mRows[position];
 
-        /****************
-         * Weather Icon *
-         ****************/
-        int weatherId = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
-        int weatherImageId;
+        /* Weather Icon */
+        forecastAdapterViewHolder.iconView.setImageResource(row.iconResId);
 
-        int viewType = getItemViewType(position);
+        /* Weather Date */
+        forecastAdapterViewHolder.dateView.setText(row.dateString);
 
-        switch (viewType) {
+        /* Weather Description, with its content description for accessibility purposes */
+        forecastAdapterViewHolder.descriptionView.setText(row.description);
+        forecastAdapterViewHolder.descriptionView.setContentDescription(row.descriptionA11y);
 
-            case VIEW_TYPE_TODAY:
-                weatherImageId = SunshineWeatherUtils
-                        .getLargeArtResourceIdForWeatherCondition(weatherId);
-                break;
+        /* High (max) temperature */
+        forecastAdapterViewHolder.highTempView.setText(row.highString);
+        forecastAdapterViewHolder.highTempView.setContentDescription(row.highA11y);
 
-            case VIEW_TYPE_FUTURE_DAY:
-                weatherImageId = SunshineWeatherUtils
-                        .getSmallArtResourceIdForWeatherCondition(weatherId);
-                break;
+        /* Low (min) temperature */
+        forecastAdapterViewHolder.lowTempView.setText(row.lowString);
+        forecastAdapterViewHolder.lowTempView.setContentDescription(row.lowA11y);
+    }
 
-            default:
-                throw new IllegalArgumentException("Invalid view type, value of " + viewType);
+    /**
+     * Called instead of the method above when only some fields of a row have changed. The
+     * payloads are the ForecastDiff.PAYLOAD_* flags of those fields, and only the matching views
+     * are updated. Without payloads, the whole row is bound.
+     *
+     * @param forecastAdapterViewHolder The ViewHolder to update
+     * @param position                  The position of the item within the adapter's data set.
+     * @param payloads                  The changes dispatched for this row since it was last bound
+     */
+    @Override
+    public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position,
+                                 List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(forecastAdapterViewHolder, position);
+            return;
+        }
+
+        int changedFields = 0;
+        for (int i = 0; i < payloads.size(); i++) {
+            changedFields |= (Integer) payloads.get(i);
+        }
+
+        ForecastRow row = mRows[position];
+
+        if ((changedFields & ForecastDiff.PAYLOAD_ICON) != 0) {
+            forecastAdapterViewHolder.iconView.setImageResource(row.iconResId);
+        }
+
+        if ((changedFields & ForecastDiff.PAYLOAD_DATE) != 0) {
+            forecastAdapterViewHolder.dateView.setText(row.dateString);
+        }
+
+        if ((changedFields & ForecastDiff.PAYLOAD_DESCRIPTION) != 0) {
+            forecastAdapterViewHolder.descriptionView.setText(row.description);
+            forecastAdapterViewHolder.descriptionView.setContentDescription(row.descriptionA11y);
         }
 
-        forecastAdapterViewHolder.iconView.setImageResource(weatherImageId);
-
-        /****************
-         * Weather Date *
-         ****************/
-         /* Read date from the cursor */
-        long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
-         /* Get human readable string using our utility method */
-        String dateString = SunshineDateUtils.getFriendlyDateString(mContext, dateInMillis, false);
-
-         /* Display friendly date string */
-        forecastAdapterViewHolder.dateView.setText(dateString);
-
-        /***********************
-         * Weather Description *
-         ***********************/
-        String description = SunshineWeatherUtils.getStringForWeatherCondition(mContext, weatherId);
-         /* Create the accessibility (a11y) String from the weather description */
-        String descriptionA11y = mContext.getString(R.string.a11y_forecast, description);
-
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.descriptionView.setText(description);
-        forecastAdapterViewHolder.descriptionView.setContentDescription(descriptionA11y);
-
-        /**************************
-         * High (max) temperature *
-         **************************/
-         /* Read high temperature from the cursor (in degrees celsius) */
-        double highInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
-         /*
-          * If the user's preference for weather is fahrenheit, formatTemperature will convert
-          * the temperature. This method will also append either °C or °F to the temperature
-          * String.
-          */
-        String highString = SunshineWeatherUtils.formatTemperature(mContext, highInCelsius);
-         /* Create the accessibility (a11y) String from the weather description */
-        String highA11y = mContext.getString(R.string.a11y_high_temp, highString);
-
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.highTempView.setText(highString);
-        forecastAdapterViewHolder.highTempView.setContentDescription(highA11y);
-
-        /*************************
-         * Low (min) temperature *
-         *************************/
-         /* Read low temperature from the cursor (in degrees celsius) */
-        double lowInCelsius = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
-         /*
-          * If the user's preference for weather is fahrenheit, formatTemperature will convert
-          * the temperature. This method will also append either °C or °F to the temperature
-          * String.
-          */
-        String lowString = SunshineWeatherUtils.formatTemperature(mContext, lowInCelsius);
-        String lowA11y = mContext.getString(R.string.a11y_low_temp, lowString);
-
-         /* Set the text and content description (for accessibility purposes) */
-        forecastAdapterViewHolder.lowTempView.setText(lowString);
-        forecastAdapterViewHolder.lowTempView.setContentDescription(lowA11y);
+        if ((changedFields & ForecastDiff.PAYLOAD_TEMPERATURES) != 0) {
+            forecastAdapterViewHolder.highTempView.setText(row.highString);
+            forecastAdapterViewHolder.highTempView.setContentDescription(row.highA11y);
+            forecastAdapterViewHolder.lowTempView.setText(row.lowString);
+            forecastAdapterViewHolder.lowTempView.setContentDescription(row.lowA11y);
+        }
     }
 
     /**
@@ -223,8 +256,7 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      */
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        return mRows.length;
     }
 
     /**
@@ -234,29 +266,135 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
      * different layout for the "today" layout. The "today" layout is only shown in portrait mode
      * with the first item in the list.
      *
-     * @param position index within our RecyclerView and Cursor
+     * @param position index within our RecyclerView and forecast
      * @return the view type (today or future day)
      */
     @Override
     public int getItemViewType(int position) {
-        if (mUseTodayLayout && position == 0) {
+        return getItemViewType(mUseTodayLayout, position);
+    }
+
+    /**
+     * The view type of a position, also used by {@link ForecastViewPrewarmer} to know which
+     * rows to prepare before the adapter exists.
+     */
+    static int getItemViewType(boolean useTodayLayout, int position) {
+        if (useTodayLayout && position == 0) {
             return VIEW_TYPE_TODAY;
         } else {
             return VIEW_TYPE_FUTURE_DAY;
         }
     }
 
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(mPrefetchOnScroll);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mPrefetchOnScroll);
+        mRecyclerView = null;
+    }
+
+    /**
+     * Hands the visible days, and a few on either side, to the {@link DetailPrefetchCache}.
+     * Before the first layout nothing is visible yet, and the first days are prefetched instead.
+     */
+    private void prefetchVisibleDetails() {
+        if (mForecast == null || mRecyclerView == null) return;
+
+        int first = 0;
+        int last = 0;
+        RecyclerView.LayoutManager layoutManager = mRecyclerView.getLayoutManager();
+        if (layoutManager instanceof LinearLayoutManager) {
+            LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+            int firstVisible = linearLayoutManager.findFirstVisibleItemPosition();
+            int lastVisible = linearLayoutManager.findLastVisibleItemPosition();
+            if (firstVisible != RecyclerView.NO_POSITION) {
+                first = firstVisible;
+                last = lastVisible;
+            }
+        }
+
+        DetailPrefetchCache.prefetch(mContext, mForecast, first, last);
+    }
+
     /**
-     * Swaps the cursor used by the ForecastAdapter for its weather data. This method is called by
-     * MainActivity after a load has finished, as well as when the Loader responsible for loading
-     * the weather data is reset. When this method is called, we assume we have a completely new
-     * set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
+     * Swaps the forecast displayed by the ForecastAdapter. This method is called by MainActivity
+     * each time the ForecastRepository publishes a new forecast.
+     * <p>
+     * Formatting the forecast into rows, and comparing them with the rows currently displayed,
+     * happens in the background. Once the rows are ready, they replace the current ones and only
+     * the rows that were inserted, removed or changed are updated in the RecyclerView. If another
+     * forecast is swapped in before that, the older rows are thrown away.
+     * <p>
+     * The forecast also carries the columns only DetailActivity shows, so that the details of
+     * the days near the visible ones can be prefetched.
      *
-     * @param newCursor the new cursor to use as ForecastAdapter's data source
+     * @param newForecast the new forecast to display, or null to display nothing
      */
-    void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    void swapForecast(ForecastSnapshot newForecast) {
+        mGeneration++;
+
+        if (mPendingRowBuild != null) {
+            mPendingRowBuild.cancel(false);
+            mPendingRowBuild = null;
+        }
+
+        if (newForecast == null || newForecast.size() == 0) {
+            applyRows(null, NO_ROWS, ForecastDiff.calculate(mRows, NO_ROWS));
+            return;
+        }
+
+        mPendingRowBuild = new BuildRowsTask(mGeneration, mRows, newForecast);
+        mPendingRowBuild.execute();
+    }
+
+    private void applyRows(ForecastSnapshot forecast, ForecastRow[] rows, ForecastDiff diff) {
+        mForecast = forecast;
+        mRows = rows;
+        diff.dispatchTo(this);
+
+        prefetchVisibleDetails();
+        /* Time to data ends when the rows are formatted and in the list, not when they load */
+        if (mRows.length != 0) {
+            StartupMetrics.firstDataLoaded(mRows.length);
+        }
+    }
+
+    /**
+     * Formats the rows for one forecast on a background thread. AsyncTask runs tasks one at a
+     * time, so rows are always built in the order the forecasts were swapped in.
+     */
+    private class BuildRowsTask extends AsyncTask<Void, Void, ForecastDiff> {
+        private final int mTaskGeneration;
+        private final ForecastRow[] mOldRows;
+        private ForecastRow[] mNewRows;
+        private final ForecastSnapshot mNewForecast;
+
+        BuildRowsTask(int generation, ForecastRow[] oldRows, ForecastSnapshot newForecast) {
+            mTaskGeneration = generation;
+            mOldRows = oldRows;
+            mNewForecast = newForecast;
+        }
+
+        @Override
+        protected ForecastDiff doInBackground(Void... params) {
+            mNewRows = ForecastRow.buildRows(mContext, mNewForecast, mUseTodayLayout);
+            return ForecastDiff.calculate(mOldRows, mNewRows);
+        }
+
+        @Override
+        protected void onPostExecute(ForecastDiff diff) {
+            /* A newer forecast has been swapped in since this task started */
+            if (mTaskGeneration != mGeneration) return;
+            mPendingRowBuild = null;
+
+            /* Rows only change with the generation, so the diff is against the rows shown */
+            applyRows(mNewForecast, mNewRows, diff);
+        }
     }
 
     /**
@@ -294,8 +432,8 @@ class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapt
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            long dateInMillis = mCursor.getLong(MainActivity.INDEX_WEATHER_DATE);
+            if (adapterPosition == RecyclerView.NO_POSITION) return;
+            long dateInMillis = mRows[adapterPosition].date;
             mClickHandler.onClick(dateInMillis);
         }
     }
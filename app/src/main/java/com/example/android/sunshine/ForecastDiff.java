@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * The difference between two lists of {@link ForecastRow}s, expressed as the insert, remove and
+ * change events RecyclerView understands.
+ * <p>
+ * Rows are identified by their date, and both lists are sorted by date, so a single merge pass
+ * over the two lists finds every difference. There is no need for a general purpose diff (and
+ * DiffUtil isn't available in the version of RecyclerView we use). Changed rows carry a payload
+ * naming the fields that changed, so that only those views are rebound.
+ */
+final class ForecastDiff {
+
+    /**
+     * Receives the events of a diff, in the order the adapter must be told about them.
+     */
+    interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        /**
+         * @param payload A combination of the PAYLOAD_* flags
+         */
+        void onChanged(int position, int count, int payload);
+    }
+
+    /* Flags of the change payload, telling onBindViewHolder which views are stale */
+    static final int PAYLOAD_ICON = 1;
+    static final int PAYLOAD_DATE = 1 << 1;
+    static final int PAYLOAD_DESCRIPTION = 1 << 2;
+    static final int PAYLOAD_TEMPERATURES = 1 << 3;
+
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_CHANGE = 2;
+
+    /* Each operation takes four ints: type, position, item count and payload */
+    private static final int OP_SIZE = 4;
+
+    private final int[] mOps;
+    private int mOpCount;
+
+    private ForecastDiff(int maxOps) {
+        mOps = new int[maxOps * OP_SIZE];
+    }
+
+    /**
+     * Compares two lists of rows. This only looks at fields that were formatted ahead of time,
+     * so it is cheap, but it is still meant to run off the main thread along with the
+     * formatting.
+     *
+     * @param oldRows The rows currently displayed, sorted by date
+     * @param newRows The rows about to be displayed, sorted by date
+     * @return The events that turn the old list into the new one
+     */
+    static ForecastDiff calculate(ForecastRow[] oldRows, ForecastRow[] newRows) {
+        ForecastDiff diff = new ForecastDiff(oldRows.length + newRows.length);
+
+        int oldIndex = 0;
+        int newIndex = 0;
+
+        /*
+         * Position of the next row in the adapter as it will look after every event recorded so
+         * far has been dispatched. Removed rows don't advance it, since the next row takes their
+         * place.
+         */
+        int position = 0;
+
+        while (oldIndex < oldRows.length && newIndex < newRows.length) {
+            ForecastRow oldRow = oldRows[oldIndex];
+            ForecastRow newRow = newRows[newIndex];
+
+            if (oldRow.date < newRow.date) {
+                diff.add(OP_REMOVE, position, 0);
+                oldIndex++;
+            } else if (oldRow.date > newRow.date) {
+                diff.add(OP_INSERT, position, 0);
+                newIndex++;
+                position++;
+            } else {
+                int changedFields = changedFields(oldRow, newRow);
+                if (changedFields != 0) {
+                    diff.add(OP_CHANGE, position, changedFields);
+                }
+                oldIndex++;
+                newIndex++;
+                position++;
+            }
+        }
+
+        for (; oldIndex < oldRows.length; oldIndex++) {
+            diff.add(OP_REMOVE, position, 0);
+        }
+
+        for (; newIndex < newRows.length; newIndex++) {
+            diff.add(OP_INSERT, position, 0);
+            position++;
+        }
+
+        return diff;
+    }
+
+    /**
+     * Compares the displayed fields of two rows for the same date.
+     *
+     * @return A combination of the PAYLOAD_* flags, 0 if the rows look the same
+     */
+    private static int changedFields(ForecastRow oldRow, ForecastRow newRow) {
+        int changedFields = 0;
+        if (oldRow.iconResId != newRow.iconResId) {
+            changedFields |= PAYLOAD_ICON;
+        }
+        if (!equals(oldRow.dateString, newRow.dateString)) {
+            changedFields |= PAYLOAD_DATE;
+        }
+        if (!equals(oldRow.description, newRow.description)) {
+            changedFields |= PAYLOAD_DESCRIPTION;
+        }
+        if (!equals(oldRow.highString, newRow.highString)
+                || !equals(oldRow.lowString, newRow.lowString)) {
+            changedFields |= PAYLOAD_TEMPERATURES;
+        }
+        return changedFields;
+    }
+
+    /* Like TextUtils.equals, which isn't available to the local JVM tests */
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Records a single row event, extending the previous event when it is the same kind of
+     * event on the adjacent position.
+     */
+    private void add(int type, int position, int payload) {
+        if (mOpCount > 0) {
+            int last = (mOpCount - 1) * OP_SIZE;
+            int lastType = mOps[last];
+            int lastPosition = mOps[last + 1];
+            int lastCount = mOps[last + 2];
+            int lastPayload = mOps[last + 3];
+
+            /* Removing at the same position again removes the row that moved into it */
+            boolean extendsRemove = type == OP_REMOVE && lastType == OP_REMOVE
+                    && position == lastPosition;
+            boolean extendsRange = type != OP_REMOVE && type == lastType
+                    && payload == lastPayload && position == lastPosition + lastCount;
+
+            if (extendsRemove || extendsRange) {
+                mOps[last + 2]++;
+                return;
+            }
+        }
+
+        int op = mOpCount * OP_SIZE;
+        mOps[op] = type;
+        mOps[op + 1] = position;
+        mOps[op + 2] = 1;
+        mOps[op + 3] = payload;
+        mOpCount++;
+    }
+
+    /**
+     * Sends the events to the adapter. The adapter must already be backed by the new rows.
+     *
+     * @param adapter The adapter that displays the rows
+     */
+    void dispatchTo(final RecyclerView.Adapter<?> adapter) {
+        dispatchTo(new Callback() {
+            @Override
+            public void onInserted(int position, int count) {
+                adapter.notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                adapter.notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onChanged(int position, int count, int payload) {
+                adapter.notifyItemRangeChanged(position, count, payload);
+            }
+        });
+    }
+
+    /**
+     * Sends the events to a callback, in order.
+     *
+     * @param callback Receives the events
+     */
+    void dispatchTo(Callback callback) {
+        for (int i = 0; i < mOpCount; i++) {
+            int op = i * OP_SIZE;
+            int position = mOps[op + 1];
+            int count = mOps[op + 2];
+
+            switch (mOps[op]) {
+                case OP_REMOVE:
+                    callback.onRemoved(position, count);
+                    break;
+
+                case OP_INSERT:
+                    callback.onInserted(position, count);
+                    break;
+
+                case OP_CHANGE:
+                    callback.onChanged(position, count, mOps[op + 3]);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.utilities.SunshineDateUtils;
+import com.example.android.sunshine.utilities.SunshineWeatherUtils;
+
+/**
+ * Everything {@link ForecastAdapter} displays for one day of the forecast, already formatted.
+ * Rows are built on a background thread, so binding one to a ViewHolder is nothing more than
+ * handing these fields to the views.
+ */
+final class ForecastRow {
+
+    /* Normalized UTC date of this day, which also identifies the row */
+    final long date;
+
+    final int iconResId;
+
+    final String dateString;
+
+    final String description;
+    final String descriptionA11y;
+
+    final String highString;
+    final String highA11y;
+
+    final String lowString;
+    final String lowA11y;
+
+    ForecastRow(long date, int iconResId, String dateString,
+                String description, String descriptionA11y,
+                String highString, String highA11y,
+                String lowString, String lowA11y) {
+        this.date = date;
+        this.iconResId = iconResId;
+        this.dateString = dateString;
+        this.description = description;
+        this.descriptionA11y = descriptionA11y;
+        this.highString = highString;
+        this.highA11y = highA11y;
+        this.lowString = lowString;
+        this.lowA11y = lowA11y;
+    }
+
+    /**
+     * Formats a forecast into rows. This does all the string work that used to happen in
+     * onBindViewHolder, so it must be called off the main thread.
+     *
+     * @param context        Used for resources and the user's unit preference
+     * @param forecast       The days to format
+     * @param useTodayLayout true if the first row is shown with the large "today" layout
+     * @return One row per day, in the same order as the forecast
+     */
+    static ForecastRow[] buildRows(Context context, ForecastSnapshot forecast,
+                                   boolean useTodayLayout) {
+        ForecastRow[] rows = new ForecastRow[forecast.size()];
+
+        for (int position = 0; position < rows.length; position++) {
+            long date = forecast.getDate(position);
+            int weatherId = forecast.getWeatherId(position);
+
+            /* The "today" layout shows the large art, every other row the small art */
+            int iconResId = (useTodayLayout && position == 0)
+                    ? SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId)
+                    : SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(weatherId);
+
+            String dateString =
+                    SunshineDateUtils.getFriendlyDateString(context, date, false);
+
+            String description =
+                    SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId);
+            String descriptionA11y = context.getString(R.string.a11y_forecast, description);
+
+            /*
+             * If the user's preference for weather is fahrenheit, formatTemperature will convert
+             * the temperature. This method will also append either °C or °F to the temperature
+             * String.
+             */
+            String highString =
+                    SunshineWeatherUtils.formatTemperature(context, forecast.getMaxTemp(position));
+            String highA11y = context.getString(R.string.a11y_high_temp, highString);
+
+            String lowString =
+                    SunshineWeatherUtils.formatTemperature(context, forecast.getMinTemp(position));
+            String lowA11y = context.getString(R.string.a11y_low_temp, lowString);
+
+            rows[position] = new ForecastRow(date, iconResId, dateString,
+                    description, descriptionA11y, highString, highA11y, lowString, lowA11y);
+        }
+
+        return rows;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.util.ArrayDeque;
+
+/**
+ * Inflates the views of the forecast list on a background thread while MainActivity is still
+ * starting, so that the first layout of the list finds them ready instead of inflating every
+ * visible row on the main thread. The views are kept in a pool per view type, and
+ * {@link ForecastAdapter#onCreateViewHolder} takes from the pool before inflating on its own.
+ * <p>
+ * The inflater used here has no factory, unlike the activity's, which AppCompat sets up to turn
+ * ImageView and TextView into their AppCompat subclasses. Those go through AppCompat's drawable
+ * manager and tint caches, which aren't thread safe and are used by the main thread at the same
+ * time, so prewarmed rows are plain framework and ConstraintLayout views instead. The rows set
+ * no tint or compat attributes, so they look the same either way. The views are inflated into a
+ * throwaway FrameLayout so their layout_ attributes are kept; RecyclerView converts the
+ * resulting layout params when it adds the views.
+ */
+final class ForecastViewPrewarmer {
+
+    private static final String TAG = ForecastViewPrewarmer.class.getSimpleName();
+
+    /* Rows prepared beyond those that fill the screen, for the first bit of scrolling */
+    private static final int EXTRA_ROWS = 2;
+
+    private final LayoutInflater mInflater;
+
+    /* Views ready to be used, per view type. Guarded by itself */
+    private final SparseArray<ArrayDeque<View>> mPool = new SparseArray<>();
+
+    private volatile boolean mReleased;
+
+    private int mHits;
+    private int mMisses;
+
+    private ForecastViewPrewarmer(Context context) {
+        /*
+         * A LayoutInflater isn't thread safe, so the background thread gets its own. It is
+         * cloned from the application's inflater, which has no AppCompat factory, but in the
+         * activity's themed context so text appearances resolve the same
+         */
+        mInflater = LayoutInflater.from(context.getApplicationContext()).cloneInContext(context);
+    }
+
+    /**
+     * Starts inflating enough rows to fill the screen. Call this early in onCreate, before
+     * setContentView, so the inflation overlaps with the rest of the startup.
+     *
+     * @param activityContext The themed context the list will be displayed in
+     * @return The prewarmer, to hand to the ForecastAdapter
+     */
+    static ForecastViewPrewarmer start(Context activityContext) {
+        final ForecastViewPrewarmer prewarmer = new ForecastViewPrewarmer(activityContext);
+
+        final boolean useTodayLayout =
+                activityContext.getResources().getBoolean(R.bool.use_today_layout);
+        final int rowCount = estimateVisibleRows(activityContext) + EXTRA_ROWS;
+
+        Thread thread = new Thread("ForecastViewPrewarmer") {
+            @Override
+            public void run() {
+                prewarmer.inflateRows(useTodayLayout, rowCount);
+            }
+        };
+        thread.start();
+
+        return prewarmer;
+    }
+
+    /**
+     * @return How many rows of the standard height fit on the screen
+     */
+    private static int estimateVisibleRows(Context context) {
+        TypedValue value = new TypedValue();
+        context.getTheme().resolveAttribute(android.R.attr.listPreferredItemHeight, value, true);
+        float rowHeight = value.getDimension(context.getResources().getDisplayMetrics());
+        int screenHeight = context.getResources().getDisplayMetrics().heightPixels;
+        if (rowHeight <= 0) return 0;
+        return (int) Math.ceil(screenHeight / rowHeight);
+    }
+
+    private void inflateRows(boolean useTodayLayout, int rowCount) {
+        long start = System.nanoTime();
+        FrameLayout root = new FrameLayout(mInflater.getContext());
+
+        int inflated = 0;
+        for (int row = 0; row < rowCount && !mReleased; row++) {
+            int viewType = ForecastAdapter.getItemViewType(useTodayLayout, row);
+            View view = mInflater.inflate(ForecastAdapter.getLayoutId(viewType), root, false);
+
+            synchronized (mPool) {
+                ArrayDeque<View> views = mPool.get(viewType);
+                if (views == null) {
+                    views = new ArrayDeque<>();
+                    mPool.put(viewType, views);
+                }
+                views.add(view);
+            }
+            inflated++;
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Prewarmed " + inflated + " rows in "
+                    + (System.nanoTime() - start) / 1000000 + "ms");
+        }
+    }
+
+    /**
+     * Takes a prewarmed view out of the pool. Called on the main thread.
+     *
+     * @param viewType One of the view types of ForecastAdapter
+     * @return A view that was never attached, or null if none is ready for that type
+     */
+    View take(int viewType) {
+        View view = null;
+        synchronized (mPool) {
+            ArrayDeque<View> views = mPool.get(viewType);
+            if (views != null) {
+                view = views.poll();
+            }
+        }
+
+        if (view != null) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return view;
+    }
+
+    /**
+     * Stops the inflation and drops the views not used by now. Called from onDestroy.
+     */
+    void release() {
+        mReleased = true;
+        synchronized (mPool) {
+            mPool.clear();
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Prewarmed rows used: " + mHits + ", inflated on the main thread: "
+                    + mMisses);
+        }
+    }
+}
@@ -16,12 +16,8 @@
 package com.example.android.sunshine;
 
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -30,50 +26,24 @@ import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 
+import com.example.android.sunshine.data.ForecastRepository;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.utilities.StartupMetrics;
 
 public class MainActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor>,
+        ForecastRepository.Observer,
         ForecastAdapter.ForecastAdapterOnClickHandler {
 
     private final String TAG = MainActivity.class.getSimpleName();
 
-    /*
-     * The columns of data that we are interested in displaying within our MainActivity's list of
-     * weather data.
-     */
-    public static final String[] MAIN_FORECAST_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-    };
-
-    /*
-     * We store the indices of the values in the array of Strings above to more quickly be able to
-     * access the data from our query. If the order of the Strings above changes, these indices
-     * must be adjusted to match the order of the Strings.
-     */
-    public static final int INDEX_WEATHER_DATE = 0;
-    public static final int INDEX_WEATHER_MAX_TEMP = 1;
-    public static final int INDEX_WEATHER_MIN_TEMP = 2;
-    public static final int INDEX_WEATHER_CONDITION_ID = 3;
-
-
-    /*
-     * This ID will be used to identify the Loader responsible for loading our weather forecast. In
-     * some cases, one Activity can deal with many Loaders. However, in our case, there is only one.
-     * We will still use this ID to initialize the loader and create the loader for best practice.
-     * Please note that 44 was chosen arbitrarily. You can use whatever number you like, so long as
-     * it is unique and consistent.
-     */
-    private static final int ID_FORECAST_LOADER = 44;
-
     private ForecastAdapter mForecastAdapter;
+    private ForecastViewPrewarmer mViewPrewarmer;
     private RecyclerView mRecyclerView;
     private int mPosition = RecyclerView.NO_POSITION;
 
@@ -82,8 +52,18 @@ public class MainActivity extends AppCompatActivity implements
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupMetrics.launchStarted();
+        StartupMetrics.beginSection("MainActivity.onCreate");
+
         super.onCreate(savedInstanceState);
+
+        /* Inflate the rows of the list in the background while the rest of the layout inflates */
+        mViewPrewarmer = ForecastViewPrewarmer.start(this);
+
+        StartupMetrics.beginSection("setContentView");
         setContentView(R.layout.activity_forecast);
+        StartupMetrics.endSection();
+
         getSupportActionBar().setElevation(0f);
 
         /*
@@ -137,7 +117,7 @@ public class MainActivity extends AppCompatActivity implements
          * MainActivity implements the ForecastAdapter ForecastOnClickHandler interface, "this"
          * is also an instance of that type of handler.
          */
-        mForecastAdapter = new ForecastAdapter(this, this);
+        mForecastAdapter = new ForecastAdapter(this, this, mViewPrewarmer);
 
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         mRecyclerView.setAdapter(mForecastAdapter);
@@ -146,14 +126,45 @@ public class MainActivity extends AppCompatActivity implements
         showLoading();
 
         /*
-         * Ensures a loader is initialized and active. If the loader doesn't already exist, one is
-         * created and (if the activity/fragment is currently started) starts the loader. Otherwise
-         * the last created loader is re-used.
+         * Starts observing the forecast. If it is already in memory, as it is after a rotation,
+         * it is delivered right away and no query is made.
          */
-        getSupportLoaderManager().initLoader(ID_FORECAST_LOADER, null, this);
+        ForecastRepository.getInstance(this).observe(this);
 
-        SunshineSyncUtils.initialize(this);
+        /*
+         * Scheduling the sync jobs and checking whether the database is empty don't need to
+         * happen before the user sees anything, so we wait for the first frame to do them.
+         */
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupMetrics.firstFrameDrawn();
+
+                        /* Posting runs the initialization once this frame has been drawn */
+                        decorView.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                StartupMetrics.beginSection("SunshineSyncUtils.initialize");
+                                SunshineSyncUtils.initialize(getApplicationContext());
+                                StartupMetrics.endSection();
+                            }
+                        });
+                        return true;
+                    }
+                });
+
+        StartupMetrics.endSection();
+    }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        ForecastRepository.getInstance(this).removeObserver(this);
+        /* Views inflated for this Activity can't be used by the next one */
+        mViewPrewarmer.release();
     }
 
     /**
@@ -183,78 +194,24 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Called by the {@link android.support.v4.app.LoaderManagerImpl} when a new Loader needs to be
-     * created. This Activity only uses one loader, so we don't necessarily NEED to check the
-     * loaderId, but this is certainly best practice.
-     *
-     * @param loaderId The loader ID for which we need to create a loader
-     * @param bundle   Any arguments supplied by the caller
-     * @return A new Loader instance that is ready to start loading.
-     */
-    @Override
-    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
-
-
-        switch (loaderId) {
-
-            case ID_FORECAST_LOADER:
-                /* URI for all rows of weather data in our weather table */
-                Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
-                /* Sort order: Ascending by date */
-                String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-                /*
-                 * A SELECTION in SQL declares which rows you'd like to return. In our case, we
-                 * want all weather data from today onwards that is stored in our weather table.
-                 * We created a handy method to do that in our WeatherEntry class.
-                 */
-                String selection = WeatherContract.WeatherEntry.getSqlSelectForTodayOnwards();
-
-                return new CursorLoader(this,
-                        forecastQueryUri,
-                        MAIN_FORECAST_PROJECTION,
-                        selection,
-                        null,
-                        sortOrder);
-
-            default:
-                throw new RuntimeException("Loader Not Implemented: " + loaderId);
-        }
-    }
-
-    /**
-     * Called when a Loader has finished loading its data.
+     * Called when the ForecastRepository has a new forecast, and once right after we start
+     * observing it if it is already in memory.
      *
-     * NOTE: There is one small bug in this code. If no data is present in the cursor do to an
+     * NOTE: There is one small bug in this code. If no data is present in the forecast due to an
      * initial load being performed with no access to internet, the loading indicator will show
      * indefinitely, until data is present from the ContentProvider. This will be fixed in a
      * future version of the course.
      *
-     * @param loader The Loader that has finished.
-     * @param data   The data generated by the Loader.
+     * @param forecast The forecast from today onwards
      */
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-
-
-        mForecastAdapter.swapCursor(data);
+    public void onForecastChanged(ForecastSnapshot forecast) {
+        mForecastAdapter.swapForecast(forecast);
         if (mPosition == RecyclerView.NO_POSITION) mPosition = 0;
         mRecyclerView.smoothScrollToPosition(mPosition);
-        if (data.getCount() != 0) showWeatherDataView();
-    }
-
-    /**
-     * Called when a previously created loader is being reset, and thus making its data unavailable.
-     * The application should at this point remove any references it has to the Loader's data.
-     *
-     * @param loader The Loader that is being reset.
-     */
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        /*
-         * Since this Loader's data is now invalid, we need to clear the Adapter that is
-         * displaying the data.
-         */
-        mForecastAdapter.swapCursor(null);
+        if (forecast.size() != 0) {
+            showWeatherDataView();
+        }
     }
 
     /**
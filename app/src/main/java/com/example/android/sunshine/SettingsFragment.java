@@ -16,7 +16,9 @@
 package com.example.android.sunshine;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.preference.CheckBoxPreference;
 import android.support.v7.preference.ListPreference;
@@ -24,9 +26,12 @@ import android.support.v7.preference.Preference;
 import android.support.v7.preference.PreferenceFragmentCompat;
 import android.support.v7.preference.PreferenceScreen;
 
+import com.example.android.sunshine.data.ForecastRepository;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 import com.example.android.sunshine.sync.SunshineSyncUtils;
+import com.example.android.sunshine.utilities.SunshineWearUtils;
 
 /**
  * The SettingsFragment serves as the display for all of the user's settings. In Sunshine, the
@@ -90,6 +95,23 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
                 .registerOnSharedPreferenceChangeListener(this);
     }
 
+    /**
+     * Publishes the forecast to the watch off the main thread, as recording what was put reads
+     * and writes preferences. The pool executor keeps it from waiting behind the forecast list's
+     * row builds, which the units change also starts.
+     */
+    private static void publishToWear(Activity activity, final ForecastSnapshot forecast,
+                                      final boolean isMetric) {
+        final Context appContext = activity.getApplicationContext();
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                new SunshineWearUtils(appContext).publishForecast(forecast, isMetric);
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         Activity activity = getActivity();
@@ -102,6 +124,14 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         } else if (key.equals(getString(R.string.pref_units_key))) {
             // units have changed. update lists of weather entries accordingly
             activity.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+            // and the watch, which formats temperatures in the unit sent with each day. the
+            // unit is read here, as SunshinePreferences may not have seen the change yet
+            ForecastSnapshot forecast = ForecastRepository.getInstance(activity).getForecast();
+            if (forecast != null) {
+                String metric = getString(R.string.pref_units_metric);
+                boolean isMetric = metric.equals(sharedPreferences.getString(key, metric));
+                publishToWear(activity, forecast, isMetric);
+            }
         }
         Preference preference = findPreference(key);
         if (null != preference) {
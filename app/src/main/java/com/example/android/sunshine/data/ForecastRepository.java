@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.sync.SyncResultBus;
+import com.example.android.sunshine.sync.SyncResultEvent;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the forecast from today onwards in memory, as a {@link ForecastSnapshot}, for every
+ * screen of the app. The provider is queried once when the first observer arrives, and after
+ * that only when it notifies a change to the weather table. A sync doesn't have the provider
+ * notify its writes; the forecast it stored arrives through the {@link SyncResultBus} instead
+ * and is published as is. Opening a screen, or rotating one, is served from the snapshot
+ * already in memory.
+ * <p>
+ * Queries run on a background thread. Observers are registered, notified and removed on the
+ * main thread.
+ */
+public final class ForecastRepository {
+
+    private static final String TAG = ForecastRepository.class.getSimpleName();
+
+    /**
+     * Receives the forecast each time it changes.
+     */
+    public interface Observer {
+        /**
+         * Called on the main thread.
+         *
+         * @param forecast The forecast from today onwards, possibly with no days
+         */
+        void onForecastChanged(ForecastSnapshot forecast);
+    }
+
+    private static final int MSG_RELOAD = 1;
+    private static final int MSG_LOADED = 2;
+
+    private static ForecastRepository sInstance;
+
+    private final Context mContext;
+
+    /* Runs the queries */
+    private final Handler mLoadHandler;
+
+    /* Publishes the loaded forecast to the observers */
+    private final Handler mMainHandler;
+
+    /* Main thread only */
+    private final ArrayList<Observer> mObservers = new ArrayList<>();
+    private boolean mStarted;
+
+    /* Written on the main thread, may be read from any thread */
+    private volatile ForecastSnapshot mForecast;
+
+    private ForecastRepository(Context context) {
+        mContext = context.getApplicationContext();
+
+        HandlerThread thread = new HandlerThread("ForecastRepository",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+
+        mLoadHandler = new Handler(thread.getLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                ForecastSnapshot forecast = queryForecast();
+                if (forecast != null) {
+                    mMainHandler.obtainMessage(MSG_LOADED, forecast).sendToTarget();
+                }
+            }
+        };
+
+        mMainHandler = new Handler(Looper.getMainLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                publish((ForecastSnapshot) msg.obj);
+            }
+        };
+    }
+
+    /**
+     * @param context Any context, only its application context is kept
+     * @return The repository of this process
+     */
+    public static synchronized ForecastRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastRepository(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Registers an observer. If the forecast is already in memory, the observer receives it
+     * before this method returns; otherwise it receives it once the first query completes.
+     *
+     * @param observer The observer to add, on the main thread
+     */
+    public void observe(Observer observer) {
+        mObservers.add(observer);
+
+        if (!mStarted) {
+            mStarted = true;
+            /*
+             * Once started, the repository stays current for the life of the process. The
+             * observer is never unregistered, like the repository itself.
+             */
+            mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI,
+                    true, new ContentObserver(mLoadHandler) {
+                        @Override
+                        public void onChange(boolean selfChange) {
+                            requestReload();
+                        }
+                    });
+            SyncResultBus.subscribe(new SyncResultBus.Listener() {
+                @Override
+                public void onSyncResult(SyncResultEvent event) {
+                    publish(event.forecast);
+                }
+            });
+            requestReload();
+        } else if (mForecast != null) {
+            observer.onForecastChanged(mForecast);
+        }
+    }
+
+    /**
+     * @param observer The observer to remove, on the main thread
+     */
+    public void removeObserver(Observer observer) {
+        mObservers.remove(observer);
+    }
+
+    /**
+     * @return The forecast in memory, or null if it hasn't been loaded yet
+     */
+    public ForecastSnapshot getForecast() {
+        return mForecast;
+    }
+
+    /**
+     * Queues a query of the provider. Notifications that arrive in a row are served by a single
+     * query.
+     */
+    private void requestReload() {
+        mLoadHandler.removeMessages(MSG_RELOAD);
+        mLoadHandler.sendEmptyMessage(MSG_RELOAD);
+    }
+
+    private void publish(ForecastSnapshot forecast) {
+        mForecast = forecast;
+
+        /* Iterate over a copy, so observers can remove themselves when notified */
+        Observer[] observers = mObservers.toArray(new Observer[mObservers.size()]);
+        for (Observer observer : observers) {
+            observer.onForecastChanged(forecast);
+        }
+    }
+
+    /**
+     * Reads the forecast from today onwards. Runs on the load thread.
+     *
+     * @return The forecast, or null if the provider couldn't be queried
+     */
+    private ForecastSnapshot queryForecast() {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                ForecastSnapshot.PROJECTION,
+                WeatherEntry.getSqlSelectForTodayOnwards(),
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC");
+
+        if (cursor == null) {
+            Log.w(TAG, "Forecast query returned no cursor");
+            return null;
+        }
+
+        try {
+            return ForecastSnapshot.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+}
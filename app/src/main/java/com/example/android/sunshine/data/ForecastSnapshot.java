@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, in-memory copy of a forecast, one entry per day, ordered by date. Each column of
+ * the weather table is held in its own primitive array, so reading a day never touches SQLite or
+ * boxes a value.
+ * <p>
+ * The arrays handed to the constructor become owned by the snapshot and must not be modified
+ * afterwards. That makes a snapshot safe to share between threads without copying.
+ */
+public final class ForecastSnapshot {
+
+    /* The columns a snapshot is built from, see fromCursor */
+    public static final String[] PROJECTION = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+    };
+
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_HUMIDITY = 4;
+    private static final int INDEX_PRESSURE = 5;
+    private static final int INDEX_WIND_SPEED = 6;
+    private static final int INDEX_DEGREES = 7;
+
+    private final long[] mDates;
+    private final int[] mWeatherIds;
+    private final double[] mMaxTemps;
+    private final double[] mMinTemps;
+    private final double[] mHumidity;
+    private final double[] mPressure;
+    private final double[] mWindSpeed;
+    private final double[] mDegrees;
+
+    /**
+     * All arrays must have the same length. Dates must be normalized and in ascending order.
+     */
+    public ForecastSnapshot(long[] dates, int[] weatherIds, double[] maxTemps, double[] minTemps,
+                            double[] humidity, double[] pressure, double[] windSpeed,
+                            double[] degrees) {
+        int size = dates.length;
+        if (weatherIds.length != size || maxTemps.length != size || minTemps.length != size
+                || humidity.length != size || pressure.length != size
+                || windSpeed.length != size || degrees.length != size) {
+            throw new IllegalArgumentException("Forecast columns must all have " + size + " days");
+        }
+        mDates = dates;
+        mWeatherIds = weatherIds;
+        mMaxTemps = maxTemps;
+        mMinTemps = minTemps;
+        mHumidity = humidity;
+        mPressure = pressure;
+        mWindSpeed = windSpeed;
+        mDegrees = degrees;
+    }
+
+    /**
+     * Reads every row of a cursor into a snapshot. The cursor is left open.
+     *
+     * @param cursor Rows of the weather table with the {@link #PROJECTION} columns, ordered by
+     *               date
+     * @return The forecast the rows hold
+     */
+    public static ForecastSnapshot fromCursor(Cursor cursor) {
+        int count = cursor.getCount();
+        long[] dates = new long[count];
+        int[] weatherIds = new int[count];
+        double[] maxTemps = new double[count];
+        double[] minTemps = new double[count];
+        double[] humidity = new double[count];
+        double[] pressure = new double[count];
+        double[] windSpeed = new double[count];
+        double[] degrees = new double[count];
+
+        cursor.moveToPosition(-1);
+        for (int i = 0; cursor.moveToNext(); i++) {
+            dates[i] = cursor.getLong(INDEX_DATE);
+            weatherIds[i] = cursor.getInt(INDEX_WEATHER_ID);
+            maxTemps[i] = cursor.getDouble(INDEX_MAX_TEMP);
+            minTemps[i] = cursor.getDouble(INDEX_MIN_TEMP);
+            humidity[i] = cursor.getDouble(INDEX_HUMIDITY);
+            pressure[i] = cursor.getDouble(INDEX_PRESSURE);
+            windSpeed[i] = cursor.getDouble(INDEX_WIND_SPEED);
+            degrees[i] = cursor.getDouble(INDEX_DEGREES);
+        }
+
+        return new ForecastSnapshot(dates, weatherIds, maxTemps, minTemps,
+                humidity, pressure, windSpeed, degrees);
+    }
+
+    /**
+     * @return The number of days in this forecast
+     */
+    public int size() {
+        return mDates.length;
+    }
+
+    public long getDate(int position) {
+        return mDates[position];
+    }
+
+    public int getWeatherId(int position) {
+        return mWeatherIds[position];
+    }
+
+    public double getMaxTemp(int position) {
+        return mMaxTemps[position];
+    }
+
+    public double getMinTemp(int position) {
+        return mMinTemps[position];
+    }
+
+    public double getHumidity(int position) {
+        return mHumidity[position];
+    }
+
+    public double getPressure(int position) {
+        return mPressure[position];
+    }
+
+    public double getWindSpeed(int position) {
+        return mWindSpeed[position];
+    }
+
+    public double getDegrees(int position) {
+        return mDegrees[position];
+    }
+
+    /**
+     * Finds the day with the given date. Since dates are sorted, this is a binary search.
+     *
+     * @param normalizedDate Normalized date in milliseconds
+     * @return The position of that day, or -1 if the forecast doesn't contain it
+     */
+    public int indexOfDate(long normalizedDate) {
+        int low = 0;
+        int high = mDates.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long date = mDates[middle];
+            if (date < normalizedDate) {
+                low = middle + 1;
+            } else if (date > normalizedDate) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extends this forecast with the days of another that come after its last day, like the end
+     * of a longer forecast stored earlier.
+     *
+     * @param later The forecast to take the later days from
+     * @return This forecast followed by those days, or this forecast if there are none
+     */
+    public ForecastSnapshot append(ForecastSnapshot later) {
+        int size = mDates.length;
+        int from = 0;
+        while (from < later.mDates.length
+                && size != 0 && later.mDates[from] <= mDates[size - 1]) {
+            from++;
+        }
+        int added = later.mDates.length - from;
+        if (added == 0) return this;
+
+        return new ForecastSnapshot(
+                concat(mDates, later.mDates, from),
+                concat(mWeatherIds, later.mWeatherIds, from),
+                concat(mMaxTemps, later.mMaxTemps, from),
+                concat(mMinTemps, later.mMinTemps, from),
+                concat(mHumidity, later.mHumidity, from),
+                concat(mPressure, later.mPressure, from),
+                concat(mWindSpeed, later.mWindSpeed, from),
+                concat(mDegrees, later.mDegrees, from));
+    }
+
+    private static long[] concat(long[] first, long[] second, int from) {
+        long[] result = Arrays.copyOf(first, first.length + second.length - from);
+        System.arraycopy(second, from, result, first.length, second.length - from);
+        return result;
+    }
+
+    private static int[] concat(int[] first, int[] second, int from) {
+        int[] result = Arrays.copyOf(first, first.length + second.length - from);
+        System.arraycopy(second, from, result, first.length, second.length - from);
+        return result;
+    }
+
+    private static double[] concat(double[] first, double[] second, int from) {
+        double[] result = Arrays.copyOf(first, first.length + second.length - from);
+        System.arraycopy(second, from, result, first.length, second.length - from);
+        return result;
+    }
+
+    /**
+     * Converts this forecast into the rows expected by WeatherProvider's bulkInsert.
+     *
+     * @return One ContentValues per day, in date order
+     */
+    public ContentValues[] toContentValues() {
+        ContentValues[] weatherContentValues = new ContentValues[mDates.length];
+        for (int i = 0; i < mDates.length; i++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_DATE, mDates[i]);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, mHumidity[i]);
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, mPressure[i]);
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, mWindSpeed[i]);
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, mDegrees[i]);
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, mMaxTemps[i]);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, mMinTemps[i]);
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, mWeatherIds[i]);
+            weatherContentValues[i] = weatherValues;
+        }
+        return weatherContentValues;
+    }
+}
@@ -18,6 +18,7 @@ package com.example.android.sunshine.data;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 
 import com.example.android.sunshine.R;
 
@@ -31,6 +32,101 @@ public final class SunshinePreferences {
     public static final String PREF_COORD_LAT = "coord_lat";
     public static final String PREF_COORD_LONG = "coord_long";
 
+    /*
+     * The location the stored forecast is for. A sync only replaces the days it fetched, so the
+     * days of another location must all go before the first forecast of a new one is stored.
+     */
+    private static final String PREF_FORECAST_LOCATION = "forecast_location";
+
+    /*
+     * Sunshine reads its preferences far more often than it writes them: the units on every
+     * temperature formatted, the location on every URL built. Rather than going through
+     * SharedPreferences each time, accessors read an immutable snapshot of every preference.
+     * The snapshot is replaced whenever a preference changes, either through our own setters
+     * below or through the change listener, which catches the settings screen.
+     */
+    private static final class Snapshot {
+        final String location;
+        final boolean isMetric;
+        final boolean hasCoordinates;
+        final long latitudeBits;
+        final long longitudeBits;
+        final boolean notificationsEnabled;
+        final long lastNotificationTime;
+        final String forecastLocation;
+
+        Snapshot(Context context, SharedPreferences sp) {
+            location = sp.getString(context.getString(R.string.pref_location_key),
+                    context.getString(R.string.pref_location_default));
+
+            String metric = context.getString(R.string.pref_units_metric);
+            isMetric = metric.equals(sp.getString(context.getString(R.string.pref_units_key), metric));
+
+            hasCoordinates = sp.contains(PREF_COORD_LAT) && sp.contains(PREF_COORD_LONG);
+            latitudeBits = sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0));
+            longitudeBits = sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0));
+
+            /*
+             * In Sunshine, the user has the ability to say whether she would like notifications
+             * enabled or not. If no preference has been chosen, we reference a bool stored in
+             * bools.xml.
+             */
+            notificationsEnabled = sp.getBoolean(
+                    context.getString(R.string.pref_enable_notifications_key),
+                    context.getResources().getBoolean(R.bool.show_notifications_by_default));
+
+            lastNotificationTime = sp.getLong(context.getString(R.string.pref_last_notification), 0);
+
+            forecastLocation = sp.getString(PREF_FORECAST_LOCATION, null);
+        }
+    }
+
+    private static volatile Snapshot sSnapshot;
+
+    /*
+     * SharedPreferences only keeps weak references to its listeners, so we hold on to ours for
+     * the lifetime of the process.
+     */
+    private static SharedPreferences.OnSharedPreferenceChangeListener sSnapshotListener;
+
+    /**
+     * Returns the current snapshot of Sunshine's preferences. The first call reads the
+     * preferences and starts listening for changes; every later call is a single volatile read.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The snapshot
+     */
+    private static Snapshot getSnapshot(Context context) {
+        Snapshot snapshot = sSnapshot;
+        if (snapshot != null) return snapshot;
+
+        synchronized (SunshinePreferences.class) {
+            if (sSnapshot == null) {
+                refreshSnapshot(context, PreferenceManager.getDefaultSharedPreferences(context));
+            }
+            return sSnapshot;
+        }
+    }
+
+    /**
+     * Re-reads every preference into a new snapshot, and makes sure we are listening for
+     * changes made elsewhere. Reading and publishing happen under one lock, so a snapshot can
+     * never be replaced by one that was read before it.
+     */
+    private static synchronized void refreshSnapshot(Context context, SharedPreferences sp) {
+        if (sSnapshotListener == null) {
+            final Context appContext = context.getApplicationContext();
+            sSnapshotListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+                @Override
+                public void onSharedPreferenceChanged(SharedPreferences sp, String key) {
+                    refreshSnapshot(appContext, sp);
+                }
+            };
+            sp.registerOnSharedPreferenceChangeListener(sSnapshotListener);
+        }
+        sSnapshot = new Snapshot(context, sp);
+    }
+
     /**
      * Helper method to handle setting location details in Preferences (city name, latitude,
      * longitude)
@@ -42,12 +138,29 @@ public final class SunshinePreferences {
      * @param lon      the longitude of the city
      */
     public static void setLocationDetails(Context context, double lat, double lon) {
+        long latitudeBits = Double.doubleToRawLongBits(lat);
+        long longitudeBits = Double.doubleToRawLongBits(lon);
+
+        /* Every sync reports the same coordinates for a location, so usually there's no change */
+        Snapshot snapshot = getSnapshot(context);
+        if (snapshot.hasCoordinates
+                && snapshot.latitudeBits == latitudeBits
+                && snapshot.longitudeBits == longitudeBits) {
+            return;
+        }
+
         SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
         SharedPreferences.Editor editor = sp.edit();
 
-        editor.putLong(PREF_COORD_LAT, Double.doubleToRawLongBits(lat));
-        editor.putLong(PREF_COORD_LONG, Double.doubleToRawLongBits(lon));
+        editor.putLong(PREF_COORD_LAT, latitudeBits);
+        editor.putLong(PREF_COORD_LONG, longitudeBits);
         editor.apply();
+
+        /*
+         * apply() updates SharedPreferences in memory right away, but the listener is only told
+         * later, on the main thread. Refresh now so the next read sees the new coordinates.
+         */
+        refreshSnapshot(context, sp);
     }
 
     /**
@@ -62,6 +175,8 @@ public final class SunshinePreferences {
         editor.remove(PREF_COORD_LAT);
         editor.remove(PREF_COORD_LONG);
         editor.apply();
+
+        refreshSnapshot(context, sp);
     }
 
     /**
@@ -74,12 +189,7 @@ public final class SunshinePreferences {
      * "94043,USA" if SharedPreferences have not been implemented yet.
      */
     public static String getPreferredWeatherLocation(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForLocation = context.getString(R.string.pref_location_key);
-        String defaultLocation = context.getString(R.string.pref_location_default);
-
-        return sp.getString(keyForLocation, defaultLocation);
+        return getSnapshot(context).location;
     }
 
     /**
@@ -89,19 +199,7 @@ public final class SunshinePreferences {
      * @return true if metric display should be used, false if imperial display should be used
      */
     public static boolean isMetric(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        String keyForUnits = context.getString(R.string.pref_units_key);
-        String defaultUnits = context.getString(R.string.pref_units_metric);
-        String preferredUnits = sp.getString(keyForUnits, defaultUnits);
-        String metric = context.getString(R.string.pref_units_metric);
-
-        boolean userPrefersMetric = false;
-        if (metric.equals(preferredUnits)) {
-            userPrefersMetric = true;
-        }
-
-        return userPrefersMetric;
+        return getSnapshot(context).isMetric;
     }
 
     /**
@@ -113,7 +211,7 @@ public final class SunshinePreferences {
      * @return an array containing the two coordinate values for the user's preferred location
      */
     public static double[] getLocationCoordinates(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        Snapshot snapshot = getSnapshot(context);
 
         double[] preferredCoordinates = new double[2];
 
@@ -126,10 +224,8 @@ public final class SunshinePreferences {
          * Double.longBitsToDouble does the opposite, converting a long (that represents a double)
          * into the double itself.
          */
-        preferredCoordinates[0] = Double
-                 .longBitsToDouble(sp.getLong(PREF_COORD_LAT, Double.doubleToRawLongBits(0.0)));
-        preferredCoordinates[1] = Double
-                .longBitsToDouble(sp.getLong(PREF_COORD_LONG, Double.doubleToRawLongBits(0.0)));
+        preferredCoordinates[0] = Double.longBitsToDouble(snapshot.latitudeBits);
+        preferredCoordinates[1] = Double.longBitsToDouble(snapshot.longitudeBits);
 
         return preferredCoordinates;
     }
@@ -142,17 +238,7 @@ public final class SunshinePreferences {
      * @return true if lat/long are saved in SharedPreferences
      */
     public static boolean isLocationLatLonAvailable(Context context) {
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        boolean spContainLatitude = sp.contains(PREF_COORD_LAT);
-        boolean spContainLongitude = sp.contains(PREF_COORD_LONG);
-
-        boolean spContainBothLatitudeAndLongitude = false;
-        if (spContainLatitude && spContainLongitude) {
-            spContainBothLatitudeAndLongitude = true;
-        }
-
-        return spContainBothLatitudeAndLongitude;
+        return getSnapshot(context).hasCoordinates;
     }
 
     /**
@@ -163,26 +249,7 @@ public final class SunshinePreferences {
      * @return true if the user prefers to see notifications, false otherwise
      */
     public static boolean areNotificationsEnabled(Context context) {
-        /* Key for accessing the preference for showing notifications */
-        String displayNotificationsKey = context.getString(R.string.pref_enable_notifications_key);
-
-        /*
-         * In Sunshine, the user has the ability to say whether she would like notifications
-         * enabled or not. If no preference has been chosen, we want to be able to determine
-         * whether or not to show them. To do this, we reference a bool stored in bools.xml.
-         */
-        boolean shouldDisplayNotificationsByDefault = context
-                .getResources()
-                .getBoolean(R.bool.show_notifications_by_default);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
-        /* If a value is stored with the key, we extract it here. If not, use a default. */
-        boolean shouldDisplayNotifications = sp
-                .getBoolean(displayNotificationsKey, shouldDisplayNotificationsByDefault);
-
-        return shouldDisplayNotifications;
+        return getSnapshot(context).notificationsEnabled;
     }
 
     /**
@@ -192,25 +259,16 @@ public final class SunshinePreferences {
      * @return UNIX time of when the last notification was shown
      */
     public static long getLastNotificationTimeInMillis(Context context) {
-        /* Key for accessing the time at which Sunshine last displayed a notification */
-        String lastNotificationKey = context.getString(R.string.pref_last_notification);
-
-        /* As usual, we use the default SharedPreferences to access the user's preferences */
-        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
-
         /*
-         * Here, we retrieve the time in milliseconds when the last notification was shown. If
-         * SharedPreferences doesn't have a value for lastNotificationKey, we return 0. The reason
-         * we return 0 is because we compare the value returned from this method to the current
-         * system time. If the difference between the last notification time and the current time
-         * is greater than one day, we will show a notification again. When we compare the two
-         * values, we subtract the last notification time from the current system time. If the
-         * time of the last notification was 0, the difference will always be greater than the
-         * number of milliseconds in a day and we will show another notification.
+         * If no notification has been shown yet, this is 0. The reason we return 0 is because we
+         * compare the value returned from this method to the current system time. If the
+         * difference between the last notification time and the current time is greater than one
+         * day, we will show a notification again. When we compare the two values, we subtract the
+         * last notification time from the current system time. If the time of the last
+         * notification was 0, the difference will always be greater than the number of
+         * milliseconds in a day and we will show another notification.
          */
-        long lastNotificationTime = sp.getLong(lastNotificationKey, 0);
-
-        return lastNotificationTime;
+        return getSnapshot(context).lastNotificationTime;
     }
 
     /**
@@ -241,5 +299,34 @@ public final class SunshinePreferences {
         String lastNotificationKey = context.getString(R.string.pref_last_notification);
         editor.putLong(lastNotificationKey, timeOfNotification);
         editor.apply();
+
+        refreshSnapshot(context, sp);
+    }
+
+    /**
+     * Returns the location the forecast stored in the weather table is for.
+     *
+     * @param context Used to access SharedPreferences
+     * @return The location, or null if no forecast has been stored yet
+     */
+    public static String getForecastLocation(Context context) {
+        return getSnapshot(context).forecastLocation;
+    }
+
+    /**
+     * Saves the location the forecast stored in the weather table is for.
+     *
+     * @param context  Used to access SharedPreferences
+     * @param location The location of the forecast just stored
+     */
+    public static void saveForecastLocation(Context context, String location) {
+        if (TextUtils.equals(location, getSnapshot(context).forecastLocation)) return;
+
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(PREF_FORECAST_LOCATION, location);
+        editor.apply();
+
+        refreshSnapshot(context, sp);
     }
-}
\ No newline at end of file
+}
@@ -56,6 +56,17 @@ public class WeatherContract {
      */
     public static final String PATH_WEATHER = "weather";
 
+    /*
+     * Path for the sync journal, a small diagnostics table that records how long each stage of
+     * the most recent syncs took. For instance,
+     *
+     *     content://com.example.android.sunshine/sync_journal/
+     */
+    public static final String PATH_SYNC_JOURNAL = "sync_journal";
+
+    /* Query parameter a writer sets to "false" to keep the provider from notifying a change */
+    public static final String QUERY_PARAMETER_NOTIFY = "notify";
+
     /* Inner class that defines the table contents of the weather table */
     public static final class WeatherEntry implements BaseColumns {
 
@@ -64,6 +75,15 @@ public class WeatherContract {
                 .appendPath(PATH_WEATHER)
                 .build();
 
+        /*
+         * The same table, for a writer that tells the app about its changes itself, as
+         * SunshineSyncTask does through the SyncResultBus. Deletes and inserts through this URI
+         * don't notify the observers of CONTENT_URI.
+         */
+        public static final Uri CONTENT_URI_WITHOUT_NOTIFY = CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_NOTIFY, "false")
+                .build();
+
         /* Used internally as the name of our weather table. */
         public static final String TABLE_NAME = "weather";
 
@@ -134,5 +154,105 @@ public class WeatherContract {
             long normalizedUtcNow = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
             return WeatherContract.WeatherEntry.COLUMN_DATE + " >= " + normalizedUtcNow;
         }
+
+        /**
+         * Returns the selection of the rows a sync replaces when it has fetched the days from
+         * firstDate to lastDate: the days before today, which are never shown again, and the
+         * fetched days themselves. Days after lastDate, fetched by an earlier and longer sync
+         * such as a prefetch, are kept until a sync covers them again.
+         *
+         * @param today     Today's normalized date
+         * @param firstDate The normalized date of the first day fetched
+         * @param lastDate  The normalized date of the last day fetched
+         * @return The selection part of the delete that makes room for the fetched days
+         */
+        public static String getSqlSelectForReplacedDays(long today, long firstDate,
+                                                         long lastDate) {
+            return COLUMN_DATE + " < " + today
+                    + " OR (" + COLUMN_DATE + " >= " + firstDate
+                    + " AND " + COLUMN_DATE + " <= " + lastDate + ")";
+        }
+    }
+
+    /*
+     * Inner class that defines the table contents of the sync journal table. Each row describes
+     * one run of SunshineSyncTask. The table is a ring buffer: once it holds MAX_ENTRIES rows,
+     * inserting a new row discards the oldest one.
+     */
+    public static final class SyncJournalEntry implements BaseColumns {
+
+        /* The base CONTENT_URI used to query the sync journal table from the content provider */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_JOURNAL)
+                .build();
+
+        /* Used internally as the name of our sync journal table. */
+        public static final String TABLE_NAME = "sync_journal";
+
+        /* The number of sync runs the journal keeps before the oldest ones are discarded */
+        public static final int MAX_ENTRIES = 50;
+
+        /* Wall clock time (in UNIX time) at which the sync started */
+        public static final String COLUMN_STARTED_AT = "started_at";
+
+        /* One of the MODE_* values below */
+        public static final String COLUMN_SYNC_MODE = "sync_mode";
+
+        /* 1 if the sync ran on a metered network, 0 otherwise */
+        public static final String COLUMN_METERED = "metered";
+
+        /* Number of days of forecast requested from the weather server */
+        public static final String COLUMN_DAYS_REQUESTED = "days_requested";
+
+        /* One of the OUTCOME_* values below */
+        public static final String COLUMN_OUTCOME = "outcome";
+
+        /* Class and message of the exception that ended the sync, null if there was none */
+        public static final String COLUMN_ERROR = "error";
+
+        /*
+         * Time spent waiting for another sync of the same location to finish before this one
+         * could start, plus the time spent waiting for any other sync to finish with the
+         * weather table before this one could persist, in milliseconds. It is included in
+         * COLUMN_TOTAL_MILLIS.
+         */
+        public static final String COLUMN_LOCK_WAIT_MILLIS = "lock_wait_millis";
+
+        /* Duration of the whole sync, in milliseconds */
+        public static final String COLUMN_TOTAL_MILLIS = "total_millis";
+
+        /*
+         * Duration of each stage of the sync, in milliseconds. A stage that never ran is
+         * recorded as 0.
+         *
+         *   fetch   - building the URL and downloading the JSON
+         *   parse   - OpenWeatherJsonUtils turning the JSON into a ForecastSnapshot
+         *   persist - deleting the old rows and bulk inserting the new ones
+         *   wear    - starting the shared wearable connection and queuing today's weather
+         *   notify  - deciding whether to notify and queuing the notification, which the
+         *             sync builds and posts after releasing its locks
+         */
+        public static final String COLUMN_FETCH_MILLIS = "fetch_millis";
+        public static final String COLUMN_PARSE_MILLIS = "parse_millis";
+        public static final String COLUMN_PERSIST_MILLIS = "persist_millis";
+        public static final String COLUMN_WEAR_MILLIS = "wear_millis";
+        public static final String COLUMN_NOTIFY_MILLIS = "notify_millis";
+
+        /* Number of characters in the JSON response */
+        public static final String COLUMN_RESPONSE_LENGTH = "response_length";
+
+        /* Row counts of the parse and persist stages */
+        public static final String COLUMN_ROWS_PARSED = "rows_parsed";
+        public static final String COLUMN_ROWS_DELETED = "rows_deleted";
+        public static final String COLUMN_ROWS_INSERTED = "rows_inserted";
+
+        /* Values stored in COLUMN_SYNC_MODE */
+        public static final String MODE_REGULAR = "regular";
+        public static final String MODE_PREFETCH = "prefetch";
+
+        /* Values stored in COLUMN_OUTCOME */
+        public static final String OUTCOME_SUCCESS = "success";
+        public static final String OUTCOME_NO_DATA = "no_data";
+        public static final String OUTCOME_FAILED = "failed";
     }
-}
\ No newline at end of file
+}
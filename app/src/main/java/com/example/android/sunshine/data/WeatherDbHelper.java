@@ -19,6 +19,7 @@ import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.data.WeatherContract.SyncJournalEntry;
 import com.example.android.sunshine.data.WeatherContract.WeatherEntry;
 
 /**
@@ -43,7 +44,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
      * use-case, we wanted to watch out for it and warn you what could happen if you mistakenly
      * version your databases.
      */
-    private static final int DATABASE_VERSION = 3;
+    private static final int DATABASE_VERSION = 4;
 
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -99,6 +100,39 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
          * that SQL with the execSQL method of our SQLite database object.
          */
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+
+        /*
+         * The sync journal only holds diagnostics about recent syncs, so none of its columns
+         * are unique. Rows are kept in insertion order by the AUTOINCREMENT primary key, which
+         * WeatherProvider relies on to trim the oldest entries.
+         */
+        final String SQL_CREATE_SYNC_JOURNAL_TABLE =
+
+                "CREATE TABLE " + SyncJournalEntry.TABLE_NAME + " (" +
+
+                SyncJournalEntry._ID                    + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+
+                SyncJournalEntry.COLUMN_STARTED_AT      + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_SYNC_MODE       + " TEXT NOT NULL, "                    +
+                SyncJournalEntry.COLUMN_METERED         + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_DAYS_REQUESTED  + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_OUTCOME         + " TEXT NOT NULL, "                    +
+                SyncJournalEntry.COLUMN_ERROR           + " TEXT, "                             +
+
+                SyncJournalEntry.COLUMN_LOCK_WAIT_MILLIS + " INTEGER NOT NULL, "                +
+                SyncJournalEntry.COLUMN_TOTAL_MILLIS    + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_FETCH_MILLIS    + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_PARSE_MILLIS    + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_PERSIST_MILLIS  + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_WEAR_MILLIS     + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_NOTIFY_MILLIS   + " INTEGER NOT NULL, "                 +
+
+                SyncJournalEntry.COLUMN_RESPONSE_LENGTH + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_ROWS_PARSED     + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_ROWS_DELETED    + " INTEGER NOT NULL, "                 +
+                SyncJournalEntry.COLUMN_ROWS_INSERTED   + " INTEGER NOT NULL);";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_SYNC_JOURNAL_TABLE);
     }
 
     /**
@@ -116,6 +150,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncJournalEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@ package com.example.android.sunshine.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
@@ -45,6 +46,7 @@ public class WeatherProvider extends ContentProvider {
      */
     public static final int CODE_WEATHER = 100;
     public static final int CODE_WEATHER_WITH_DATE = 101;
+    public static final int CODE_SYNC_JOURNAL = 200;
 
     /*
      * The URI Matcher used by this content provider. The leading "s" in this variable name
@@ -96,6 +98,9 @@ public class WeatherProvider extends ContentProvider {
          */
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/#", CODE_WEATHER_WITH_DATE);
 
+        /* This URI is content://com.example.android.sunshine/sync_journal/ */
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_JOURNAL, CODE_SYNC_JOURNAL);
+
         return matcher;
     }
 
@@ -165,7 +170,7 @@ public class WeatherProvider extends ContentProvider {
                     db.endTransaction();
                 }
 
-                if (rowsInserted > 0) {
+                if (rowsInserted > 0 && shouldNotify(uri)) {
                     getContext().getContentResolver().notifyChange(uri, null);
                 }
 
@@ -285,6 +290,27 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
 
+            /*
+             * The sync journal is only used for diagnostics. Unless the caller asks for a
+             * different order, the most recent sync comes first.
+             */
+            case CODE_SYNC_JOURNAL: {
+                if (null == sortOrder) {
+                    sortOrder = WeatherContract.SyncJournalEntry._ID + " DESC";
+                }
+
+                cursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncJournalEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                break;
+            }
+
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -331,7 +357,7 @@ public class WeatherProvider extends ContentProvider {
         }
 
         /* If we actually deleted any rows, notify that a change has occurred to this URI */
-        if (numRowsDeleted != 0) {
+        if (numRowsDeleted != 0 && shouldNotify(uri)) {
             getContext().getContentResolver().notifyChange(uri, null);
         }
 
@@ -354,20 +380,60 @@ public class WeatherProvider extends ContentProvider {
     }
 
     /**
-     * In Sunshine, we aren't going to do anything with this method. However, we are required to
-     * override it as WeatherProvider extends ContentProvider and insert is an abstract method in
-     * ContentProvider. Rather than the single insert method, we are only going to implement
-     * {@link WeatherProvider#bulkInsert}.
+     * Weather data is only ever inserted through {@link WeatherProvider#bulkInsert}. The only
+     * single row inserts Sunshine performs are sync journal entries, one per sync.
+     * <p>
+     * The sync journal is a ring buffer. After a new entry is inserted, every entry that is more
+     * than {@link WeatherContract.SyncJournalEntry#MAX_ENTRIES} rows older is deleted, so the
+     * table never grows beyond that size.
      *
      * @param uri    The URI of the insertion request. This must not be null.
      * @param values A set of column_name/value pairs to add to the database.
      *               This must not be null
-     * @return nothing in Sunshine, but normally the URI for the newly inserted item.
+     * @return The URI of the newly inserted journal entry, or null if the insert failed.
      */
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values) {
-        throw new RuntimeException(
-                "We are not implementing insert in Sunshine. Use bulkInsert instead");
+        switch (sUriMatcher.match(uri)) {
+
+            case CODE_SYNC_JOURNAL:
+                final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+                long _id;
+
+                db.beginTransaction();
+                try {
+                    _id = db.insert(WeatherContract.SyncJournalEntry.TABLE_NAME, null, values);
+                    if (_id != -1) {
+                        long oldestIdToKeep = _id - WeatherContract.SyncJournalEntry.MAX_ENTRIES;
+                        db.delete(WeatherContract.SyncJournalEntry.TABLE_NAME,
+                                WeatherContract.SyncJournalEntry._ID + " <= ?",
+                                new String[]{Long.toString(oldestIdToKeep)});
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+
+                if (_id == -1) {
+                    return null;
+                }
+
+                getContext().getContentResolver().notifyChange(uri, null);
+                return ContentUris.withAppendedId(uri, _id);
+
+            default:
+                throw new RuntimeException(
+                        "We are not implementing insert for " + uri + ". Use bulkInsert instead");
+        }
+    }
+
+    /**
+     * @param uri The URI a change was made through
+     * @return false if the writer asked, through {@link WeatherContract#QUERY_PARAMETER_NOTIFY},
+     * to tell the app about the change itself
+     */
+    private static boolean shouldNotify(Uri uri) {
+        return !"false".equals(uri.getQueryParameter(WeatherContract.QUERY_PARAMETER_NOTIFY));
     }
 
     @Override
@@ -17,6 +17,7 @@ package com.example.android.sunshine.sync;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.os.Bundle;
 
 import com.firebase.jobdispatcher.Job;
 import com.firebase.jobdispatcher.JobParameters;
@@ -45,7 +46,13 @@ public class SunshineFirebaseJobService extends JobService {
             @Override
             protected Void doInBackground(Void... voids) {
                 Context context = getApplicationContext();
-                SunshineSyncTask.syncWeather(context);
+                /* Jobs without a sync mode extra are regular syncs */
+                int syncMode = SunshineSyncTask.SYNC_MODE_REGULAR;
+                Bundle extras = jobParameters.getExtras();
+                if (extras != null) {
+                    syncMode = extras.getInt(SunshineSyncUtils.EXTRA_SYNC_MODE, syncMode);
+                }
+                SunshineSyncTask.syncWeather(context, syncMode);
                 jobFinished(jobParameters, false);
                 return null;
             }
@@ -19,128 +19,345 @@ import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.net.Uri;
+import android.os.SystemClock;
+import android.text.TextUtils;
 import android.text.format.DateUtils;
+import android.util.Log;
 
-import com.example.android.sunshine.MainActivity;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
+import com.example.android.sunshine.data.WeatherContract.SyncJournalEntry;
 import com.example.android.sunshine.utilities.NetworkUtils;
 import com.example.android.sunshine.utilities.NotificationUtils;
 import com.example.android.sunshine.utilities.OpenWeatherJsonUtils;
 import com.example.android.sunshine.utilities.SunshineDateUtils;
 import com.example.android.sunshine.utilities.SunshineWearUtils;
 
+import org.json.JSONException;
+
+import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SunshineSyncTask {
+
+    private static final String TAG = SunshineSyncTask.class.getSimpleName();
+
+    /*
+     * A regular sync is the periodic or immediate sync that keeps the forecast up to date. On a
+     * metered network it asks for fewer days to keep the download small.
+     *
+     * A prefetch sync only runs while the device is charging and on an unmetered network. It
+     * fetches the longest forecast range the server offers so the local cache is as complete as
+     * possible by the time the user opens the app.
+     */
+    public static final int SYNC_MODE_REGULAR = 0;
+    public static final int SYNC_MODE_PREFETCH = 1;
+
+    /**
+     * Performs a regular sync.
+     *
+     * @param context Used to access utility methods and the ContentResolver
+     * @see #syncWeather(Context, int)
+     */
+    public static void syncWeather(Context context) {
+        syncWeather(context, SYNC_MODE_REGULAR);
+    }
+
     /**
      * Performs the network request for updated weather, parses the JSON from that request, and
      * inserts the new weather information into our ContentProvider. Will notify the user that new
      * weather has been loaded if the user hasn't been notified of the weather within the last day
      * AND they haven't disabled notifications in the preferences screen.
+     * <p>
+     * The sync is split into stages (fetch, parse, persist, wear and notify). Each stage is timed
+     * and the resulting {@link SyncStats} is written to the sync journal, which can be queried
+     * through {@link SyncJournalEntry#CONTENT_URI} when a sync is slow.
+     * <p>
+     * Syncs of the same location never overlap. Rather than serializing every sync in the
+     * process, the fetch and parse stages hold a lock keyed by the user's preferred location,
+     * so syncs of independent locations download in parallel. The persist, wear and notify
+     * stages all replace state shared by every location (the weather table, the watch and the
+     * notification), so they hold one lock for the whole table instead, and a sync whose
+     * location is no longer the preferred one stops there rather than overwrite the table. The
+     * time spent waiting for both locks is journaled too.
      *
-     * @param context Used to access utility methods and the ContentResolver
+     * @param context  Used to access utility methods and the ContentResolver
+     * @param syncMode Either {@link #SYNC_MODE_REGULAR} or {@link #SYNC_MODE_PREFETCH}
      */
-    synchronized public static void syncWeather(Context context) {
+    public static void syncWeather(Context context, int syncMode) {
+        SyncStats stats = new SyncStats(syncMode == SYNC_MODE_PREFETCH
+                ? SyncJournalEntry.MODE_PREFETCH
+                : SyncJournalEntry.MODE_REGULAR);
+
+        /*
+         * The location String, rather than the coordinates, identifies the location: the
+         * coordinates are only filled in by the first sync of a location and are reset whenever
+         * the location changes.
+         */
+        String locationKey = SunshinePreferences.getPreferredWeatherLocation(context);
+        ReentrantLock locationLock = SyncLocks.forLocation(locationKey);
+        ReentrantLock tableLock = SyncLocks.forWeatherTable();
 
+        lockTimed(locationLock, stats);
+        boolean tableLocked = false;
         try {
+            stats.beginStage(SyncStats.STAGE_WEAR);
             SunshineWearUtils wear = new SunshineWearUtils(context);
-            /*
-             * The getUrl method will return the URL that we need to get the forecast JSON for the
-             * weather. It will decide whether to create a URL based off of the latitude and
-             * longitude or off of a simple location as a String.
-             */
-            URL weatherRequestUrl = NetworkUtils.getUrl(context);
 
-            /* Use the URL to retrieve the JSON */
-            String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+            String jsonWeatherResponse = fetchForecastJson(context, syncMode, stats);
+
+            ForecastSnapshot forecast = parseForecast(context, jsonWeatherResponse, stats);
 
-            /* Parse the JSON into a list of weather values */
-            ContentValues[] weatherValues = OpenWeatherJsonUtils
-                    .getWeatherContentValuesFromJson(context, jsonWeatherResponse);
+            /* Waiting for another location's sync to finish isn't part of the parse stage */
+            stats.endStage();
+            lockTimed(tableLock, stats);
+            tableLocked = true;
 
             /*
-             * In cases where our JSON contained an error code, getWeatherContentValuesFromJson
-             * would have returned null. We need to check for those cases here to prevent any
+             * The user may have picked another location while we were downloading. Its own sync
+             * is the one that gets to replace the table, so this forecast is dropped.
+             */
+            boolean stillPreferred = TextUtils.equals(locationKey,
+                    SunshinePreferences.getPreferredWeatherLocation(context));
+            if (!stillPreferred) {
+                Log.d(TAG, "Dropping the forecast of " + locationKey + ", no longer preferred");
+            }
+
+            /*
+             * In cases where our JSON contained an error code, getForecastFromJson would have
+             * returned null. We need to check for those cases here to prevent any
              * NullPointerExceptions being thrown. We also have no reason to insert fresh data if
              * there isn't any to insert.
              */
-            if (weatherValues != null && weatherValues.length != 0) {
-                /* Get a handle on the ContentResolver to delete and insert data */
-                ContentResolver sunshineContentResolver = context.getContentResolver();
-                Uri todayUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
-                double high;
-                double low;
-                int condition;
-                // get old data before deleting them.
-                Cursor mCursor = sunshineContentResolver.query(todayUri, MainActivity.MAIN_FORECAST_PROJECTION, null, null, null);
-                if (mCursor != null && mCursor.moveToFirst()){
-                    high = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
-                    low = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
-                    condition = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
-                    wear.insertOldWeather(high, low, condition);
-                    mCursor.close();
-                    mCursor = null;
-                }
-
-                /* Delete old weather data because we don't need to keep multiple days' data */
-                sunshineContentResolver.delete(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        null,
-                        null);
-
-                /* Insert our new weather data into Sunshine's ContentProvider */
-                sunshineContentResolver.bulkInsert(
-                        WeatherContract.WeatherEntry.CONTENT_URI,
-                        weatherValues);
-
-                // get new data to compare
-                mCursor = sunshineContentResolver.query(todayUri, MainActivity.MAIN_FORECAST_PROJECTION, null, null, null);
-                if (mCursor != null && mCursor.moveToFirst()){
-                    high = mCursor.getDouble(MainActivity.INDEX_WEATHER_MAX_TEMP);
-                    low = mCursor.getDouble(MainActivity.INDEX_WEATHER_MIN_TEMP);
-                    condition = mCursor.getInt(MainActivity.INDEX_WEATHER_CONDITION_ID);
-                    wear.insertNewWeather(high, low, condition);
-                    mCursor.close();
-                    mCursor = null;
-                }
+            if (stillPreferred && forecast != null && forecast.size() != 0) {
+                ForecastSnapshot stored = persistForecast(context, locationKey, forecast, stats);
 
                 /*
-                 * Finally, after we insert data into the ContentProvider, determine whether or not
-                 * we should notify the user that the weather has been refreshed.
+                 * The forecast we just stored is handed to the screens through the bus, and to
+                 * the wearable and the notification below, so none of them has to read it back.
+                 * The provider didn't notify its observers of the writes above.
                  */
-                boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+                SyncResultEvent event = new SyncResultEvent(locationKey, syncMode, stored,
+                        System.currentTimeMillis());
+                SyncResultBus.post(event);
 
-                /*
-                 * If the last notification was shown was more than 1 day ago, we want to send
-                 * another notification to the user that the weather has been updated. Remember,
-                 * it's important that you shouldn't spam your users with notifications.
-                 */
-                long timeSinceLastNotification = SunshinePreferences
-                        .getEllapsedTimeSinceLastNotification(context);
+                stats.beginStage(SyncStats.STAGE_WEAR);
+                /* Publishes the days that changed since they were last published */
+                wear.publishForecast(event.forecast);
 
-                boolean oneDayPassedSinceLastNotification = false;
+                notifyIfNeeded(context, event, stats);
 
-                if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
-                    oneDayPassedSinceLastNotification = true;
-                }
-
-                /*
-                 * We only want to show the notification if the user wants them shown and we
-                 * haven't shown a notification in the past day.
-                 */
-                if (notificationsEnabled && oneDayPassedSinceLastNotification) {
-                    NotificationUtils.notifyUserOfNewWeather(context);
-                }
-
-            /* If the code reaches this point, we have successfully performed our sync */
+                stats.endStage();
 
+                /* If the code reaches this point, we have successfully performed our sync */
+                stats.succeeded();
             }
 
         } catch (Exception e) {
             /* Server probably invalid */
             e.printStackTrace();
+            stats.failed(e);
+        } finally {
+            if (tableLocked) {
+                tableLock.unlock();
+            }
+            locationLock.unlock();
+
+            stats.finish();
+            recordInJournal(context, stats);
+        }
+    }
+
+    /**
+     * Takes a lock, adding the time spent waiting for it to the sync's lock wait.
+     *
+     * @param lock  The lock to take
+     * @param stats Record of the current sync
+     */
+    private static void lockTimed(ReentrantLock lock, SyncStats stats) {
+        long lockRequestedAt = SystemClock.elapsedRealtime();
+        lock.lock();
+        stats.lockWaitMillis += SystemClock.elapsedRealtime() - lockRequestedAt;
+    }
+
+    /**
+     * Fetch stage: builds the URL for the user's location and downloads the forecast JSON. The
+     * number of days requested depends on the sync mode and on whether the network is metered.
+     *
+     * @param context  Used to access the user's location preferences
+     * @param syncMode Either {@link #SYNC_MODE_REGULAR} or {@link #SYNC_MODE_PREFETCH}
+     * @param stats    Record of the current sync
+     * @return The JSON response, null if the server returned nothing
+     * @throws IOException Related to network and stream reading
+     */
+    private static String fetchForecastJson(Context context, int syncMode, SyncStats stats)
+            throws IOException {
+        stats.beginStage(SyncStats.STAGE_FETCH);
+
+        stats.metered = NetworkUtils.isActiveNetworkMetered(context);
+
+        int numDays;
+        if (syncMode == SYNC_MODE_PREFETCH && !stats.metered) {
+            numDays = NetworkUtils.EXTENDED_NUM_DAYS;
+        } else if (stats.metered) {
+            numDays = NetworkUtils.METERED_NUM_DAYS;
+        } else {
+            numDays = NetworkUtils.DEFAULT_NUM_DAYS;
+        }
+        stats.daysRequested = numDays;
+
+        /*
+         * The getUrl method will return the URL that we need to get the forecast JSON for the
+         * weather. It will decide whether to create a URL based off of the latitude and
+         * longitude or off of a simple location as a String.
+         */
+        URL weatherRequestUrl = NetworkUtils.getUrl(context, numDays);
+
+        /* Use the URL to retrieve the JSON */
+        String jsonWeatherResponse = NetworkUtils.getResponseFromHttpUrl(weatherRequestUrl);
+
+        if (jsonWeatherResponse != null) {
+            stats.responseLength = jsonWeatherResponse.length();
+        }
+        return jsonWeatherResponse;
+    }
+
+    /**
+     * Parse stage: turns the forecast JSON into a forecast snapshot.
+     *
+     * @param context             Used by OpenWeatherJsonUtils to store the location coordinates
+     * @param jsonWeatherResponse The JSON downloaded by the fetch stage
+     * @param stats               Record of the current sync
+     * @return The parsed forecast, null if the JSON contained an error code
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    private static ForecastSnapshot parseForecast(Context context, String jsonWeatherResponse,
+                                                  SyncStats stats) throws JSONException {
+        stats.beginStage(SyncStats.STAGE_PARSE);
+
+        /* Parse the JSON into primitive arrays of weather values */
+        ForecastSnapshot forecast = OpenWeatherJsonUtils
+                .getForecastFromJson(context, jsonWeatherResponse);
+
+        if (forecast != null) {
+            stats.rowsParsed = forecast.size();
+        }
+        return forecast;
+    }
+
+    /**
+     * Persist stage: replaces the days of weather stored in Sunshine's ContentProvider that the
+     * sync fetched, and drops the past ones. Days further out are kept, so a short sync, such as
+     * a regular sync on a metered network, doesn't throw away the end of a longer prefetch.
+     * Only a change of location replaces the whole table.
+     *
+     * @param context     Used to access the ContentResolver
+     * @param locationKey The location the forecast is for
+     * @param forecast    The forecast produced by the parse stage
+     * @param stats       Record of the current sync
+     * @return The forecast now stored: the fetched days followed by the days kept after them
+     */
+    private static ForecastSnapshot persistForecast(Context context, String locationKey,
+                                                    ForecastSnapshot forecast,
+                                                    SyncStats stats) {
+        stats.beginStage(SyncStats.STAGE_PERSIST);
+
+        ContentValues[] weatherValues = forecast.toContentValues();
+
+        /* Get a handle on the ContentResolver to delete and insert data */
+        ContentResolver sunshineContentResolver = context.getContentResolver();
+
+        /* The days of another location are no use, however far out they are */
+        String selection = null;
+        long lastDate = forecast.getDate(forecast.size() - 1);
+        boolean sameLocation =
+                TextUtils.equals(locationKey, SunshinePreferences.getForecastLocation(context));
+        if (sameLocation) {
+            long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+            selection = WeatherContract.WeatherEntry.getSqlSelectForReplacedDays(today,
+                    forecast.getDate(0), lastDate);
+        }
+        stats.rowsDeleted = sunshineContentResolver.delete(
+                WeatherContract.WeatherEntry.CONTENT_URI_WITHOUT_NOTIFY,
+                selection,
+                null);
+
+        /* Insert our new weather data into Sunshine's ContentProvider */
+        stats.rowsInserted = sunshineContentResolver.bulkInsert(
+                WeatherContract.WeatherEntry.CONTENT_URI_WITHOUT_NOTIFY,
+                weatherValues);
+
+        SunshinePreferences.saveForecastLocation(context, locationKey);
+
+        if (!sameLocation) return forecast;
+
+        /* The days kept after the fetched ones, which the rest of the sync hands on too */
+        Cursor laterDays = sunshineContentResolver.query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                ForecastSnapshot.PROJECTION,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " > " + lastDate,
+                null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (laterDays == null) return forecast;
+        try {
+            return forecast.append(ForecastSnapshot.fromCursor(laterDays));
+        } finally {
+            laterDays.close();
+        }
+    }
+
+    /**
+     * Notify stage: after we insert data into the ContentProvider, determine whether or not we
+     * should notify the user that the weather has been refreshed.
+     *
+     * @param context Used to access preferences and build the notification
+     * @param event   The result of the current sync
+     * @param stats   Record of the current sync
+     */
+    private static void notifyIfNeeded(Context context, SyncResultEvent event, SyncStats stats) {
+        stats.beginStage(SyncStats.STAGE_NOTIFY);
+
+        boolean notificationsEnabled = SunshinePreferences.areNotificationsEnabled(context);
+
+        /*
+         * If the last notification was shown was more than 1 day ago, we want to send
+         * another notification to the user that the weather has been updated. Remember,
+         * it's important that you shouldn't spam your users with notifications.
+         */
+        long timeSinceLastNotification = SunshinePreferences
+                .getEllapsedTimeSinceLastNotification(context);
+
+        boolean oneDayPassedSinceLastNotification = false;
+
+        if (timeSinceLastNotification >= DateUtils.DAY_IN_MILLIS) {
+            oneDayPassedSinceLastNotification = true;
+        }
+
+        /*
+         * We only want to show the notification if the user wants them shown and we
+         * haven't shown a notification in the past day.
+         */
+        if (notificationsEnabled && oneDayPassedSinceLastNotification) {
+            NotificationUtils.notifyUserOfNewWeather(context, event.forecast);
+        }
+    }
+
+    /**
+     * Writes the record of a finished sync to the sync journal. A failure to write the journal is
+     * logged and otherwise ignored, as the journal is only used for diagnostics.
+     *
+     * @param context Used to access the ContentResolver
+     * @param stats   Record of the finished sync
+     */
+    private static void recordInJournal(Context context, SyncStats stats) {
+        Log.d(TAG, "Sync " + stats);
+        try {
+            context.getContentResolver()
+                    .insert(SyncJournalEntry.CONTENT_URI, stats.toContentValues());
+        } catch (Exception e) {
+            Log.e(TAG, "Couldn't write the sync journal", e);
         }
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 
 import com.example.android.sunshine.data.WeatherContract;
@@ -42,12 +43,25 @@ public class SunshineSyncUtils {
     private static final int SYNC_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(SYNC_INTERVAL_HOURS);
     private static final int SYNC_FLEXTIME_SECONDS = SYNC_INTERVAL_SECONDS / 3;
 
+    /*
+     * Prefetch syncs are opportunistic: they only run while the device is charging and on an
+     * unmetered network, so they can afford to run more often than the regular sync.
+     */
+    private static final int PREFETCH_INTERVAL_HOURS = 2;
+    private static final int PREFETCH_INTERVAL_SECONDS = (int) TimeUnit.HOURS.toSeconds(PREFETCH_INTERVAL_HOURS);
+    private static final int PREFETCH_FLEXTIME_SECONDS = PREFETCH_INTERVAL_SECONDS / 2;
+
     private static boolean sInitialized;
 
     private static final String SUNSHINE_SYNC_TAG = "sunshine-sync";
+    private static final String SUNSHINE_PREFETCH_TAG = "sunshine-prefetch";
+
+    /* Job extra holding the SunshineSyncTask sync mode the job should run with */
+    static final String EXTRA_SYNC_MODE = "sync_mode";
 
     /**
-     * Schedules a repeating sync of Sunshine's weather data using FirebaseJobDispatcher.
+     * Schedules a repeating sync of Sunshine's weather data using FirebaseJobDispatcher, as well
+     * as a repeating prefetch sync that only runs while charging on an unmetered network.
      * @param context Context used to create the GooglePlayDriver that powers the
      *                FirebaseJobDispatcher
      */
@@ -98,6 +112,28 @@ public class SunshineSyncUtils {
 
         /* Schedule the Job with the dispatcher */
         dispatcher.schedule(syncSunshineJob);
+
+        /*
+         * Create the Job that opportunistically prefetches an extended forecast. Both
+         * constraints must be met, so this Job never costs the user mobile data or battery.
+         */
+        Bundle prefetchExtras = new Bundle();
+        prefetchExtras.putInt(EXTRA_SYNC_MODE, SunshineSyncTask.SYNC_MODE_PREFETCH);
+
+        Job prefetchSunshineJob = dispatcher.newJobBuilder()
+                .setService(SunshineFirebaseJobService.class)
+                .setTag(SUNSHINE_PREFETCH_TAG)
+                .setExtras(prefetchExtras)
+                .setConstraints(Constraint.ON_UNMETERED_NETWORK, Constraint.DEVICE_CHARGING)
+                .setLifetime(Lifetime.FOREVER)
+                .setRecurring(true)
+                .setTrigger(Trigger.executionWindow(
+                        PREFETCH_INTERVAL_SECONDS,
+                        PREFETCH_INTERVAL_SECONDS + PREFETCH_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true)
+                .build();
+
+        dispatcher.schedule(prefetchSunshineJob);
     }
     /**
      * Creates periodic sync tasks and checks to see if an immediate sync is required. If an
@@ -116,22 +152,23 @@ public class SunshineSyncUtils {
 
         sInitialized = true;
 
-        /*
-         * This method call triggers Sunshine to create its task to synchronize weather data
-         * periodically.
-         */
-        scheduleFirebaseJobDispatcherSync(context);
-
         /*
          * We need to check to see if our ContentProvider has data to display in our forecast
          * list. However, performing a query on the main thread is a bad idea as this may
          * cause our UI to lag. Therefore, we create a thread in which we will run the query
-         * to check the contents of our ContentProvider.
+         * to check the contents of our ContentProvider. Scheduling the jobs binds to Google
+         * Play services, so we do that on the same thread.
          */
         Thread checkForEmpty = new Thread(new Runnable() {
             @Override
             public void run() {
 
+                /*
+                 * This method call triggers Sunshine to create its task to synchronize weather
+                 * data periodically.
+                 */
+                scheduleFirebaseJobDispatcherSync(context);
+
                 /* URI for every row of weather data in our weather table*/
                 Uri forecastQueryUri = WeatherContract.WeatherEntry.CONTENT_URI;
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that serialize the download of syncs per location rather than per
+ * process. Two syncs for the same location always get the same lock, so they never overlap.
+ * Syncs for different locations usually get different locks and run in parallel; when two
+ * locations hash to the same stripe they simply take turns, which is always safe.
+ * <p>
+ * There is only one weather table, so whatever replaces it, or the watch and notification that
+ * mirror it, holds the single {@link #forWeatherTable()} lock, whatever the location.
+ */
+final class SyncLocks {
+
+    /* Must be a power of two so that a stripe can be picked with a mask */
+    private static final int STRIPE_COUNT = 8;
+
+    private static final ReentrantLock[] sStripes = new ReentrantLock[STRIPE_COUNT];
+
+    private static final ReentrantLock sWeatherTableLock = new ReentrantLock();
+
+    static {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            sStripes[i] = new ReentrantLock();
+        }
+    }
+
+    private SyncLocks() {
+    }
+
+    /**
+     * Returns the lock guarding syncs for the given location.
+     *
+     * @param locationKey Identifies the location being synced, null for the default location
+     * @return The lock to hold while fetching and parsing the location's forecast
+     */
+    static ReentrantLock forLocation(String locationKey) {
+        int hash = locationKey == null ? 0 : locationKey.hashCode();
+        /* Spread the high bits so that similar keys don't all land on the same stripe */
+        hash ^= (hash >>> 16);
+        return sStripes[hash & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Returns the lock guarding the weather table and the state derived from it. It is always
+     * taken after the location's lock, never before, so the two can't deadlock.
+     *
+     * @return The lock to hold while persisting, publishing to the wearable and notifying
+     */
+    static ReentrantLock forWeatherTable() {
+        return sWeatherTableLock;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in-process stream of {@link SyncResultEvent}s. SunshineSyncTask posts an event once a fresh
+ * forecast has been stored, and ForecastRepository subscribes, so the screens get the new
+ * forecast without querying the database again.
+ * <p>
+ * Events are only ever held in memory; after the process restarts, the database remains the
+ * source of truth.
+ */
+public final class SyncResultBus {
+
+    private static final String TAG = SyncResultBus.class.getSimpleName();
+
+    /**
+     * Receives the result of every successful sync, on the main thread.
+     */
+    public interface Listener {
+        void onSyncResult(SyncResultEvent event);
+    }
+
+    /*
+     * Events are posted far less often than listeners are notified, so a copy-on-write list lets
+     * the sync thread iterate without holding a lock.
+     */
+    private static final CopyOnWriteArrayList<Listener> sListeners =
+            new CopyOnWriteArrayList<>();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private SyncResultBus() {
+    }
+
+    /**
+     * Registers a listener for future sync results.
+     *
+     * @param listener The listener to add
+     */
+    public static void subscribe(Listener listener) {
+        sListeners.add(listener);
+    }
+
+    /**
+     * Publishes a sync result to every subscriber, on the main thread. A listener that throws is
+     * logged and doesn't prevent the others from being notified.
+     *
+     * @param event The result to publish
+     */
+    static void post(final SyncResultEvent event) {
+        for (final Listener listener : sListeners) {
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        listener.onSyncResult(event);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Sync result listener failed", e);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+
+/**
+ * Published on the {@link SyncResultBus} each time a sync has stored a fresh forecast. It carries
+ * the forecast as it now stands in the database, so subscribers never need to query
+ * WeatherProvider to find out what changed.
+ */
+public final class SyncResultEvent {
+
+    /* The location that was synced, as stored in SunshinePreferences */
+    public final String locationKey;
+
+    /* Either SunshineSyncTask.SYNC_MODE_REGULAR or SunshineSyncTask.SYNC_MODE_PREFETCH */
+    public final int syncMode;
+
+    /*
+     * The days that have just been written to the database, followed by the later days of an
+     * earlier sync that were kept
+     */
+    public final ForecastSnapshot forecast;
+
+    /* Wall clock time (in UNIX time) at which the forecast was stored */
+    public final long completedAtMillis;
+
+    SyncResultEvent(String locationKey, int syncMode, ForecastSnapshot forecast,
+                    long completedAtMillis) {
+        this.locationKey = locationKey;
+        this.syncMode = syncMode;
+        this.forecast = forecast;
+        this.completedAtMillis = completedAtMillis;
+    }
+}
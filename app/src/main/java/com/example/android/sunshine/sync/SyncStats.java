@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.sync;
+
+import android.content.ContentValues;
+import android.os.SystemClock;
+
+import com.example.android.sunshine.data.WeatherContract.SyncJournalEntry;
+
+/**
+ * Collects the timings and row counts of a single run of {@link SunshineSyncTask}. Once the sync
+ * is over, {@link #toContentValues()} turns the record into a row for the sync journal.
+ * <p>
+ * A SyncStats is only ever used by the thread that performs the sync, so it isn't thread safe.
+ */
+final class SyncStats {
+
+    /* The stages a sync goes through, in the order they normally run */
+    static final int STAGE_FETCH = 0;
+    static final int STAGE_PARSE = 1;
+    static final int STAGE_PERSIST = 2;
+    static final int STAGE_WEAR = 3;
+    static final int STAGE_NOTIFY = 4;
+    private static final int STAGE_COUNT = 5;
+
+    private static final String[] STAGE_NAMES = {"fetch", "parse", "persist", "wear", "notify"};
+
+    private final String mSyncMode;
+    private final long mStartedAtMillis;
+    private final long mStartedAtElapsed;
+
+    /*
+     * Time spent in each stage. A stage may be entered more than once (the wear stage makes sure
+     * the shared wearable connection is started before the fetch and queues today's weather
+     * after the persist stage), so time accumulates.
+     */
+    private final long[] mStageMillis = new long[STAGE_COUNT];
+
+    private int mCurrentStage = -1;
+    private long mCurrentStageStartElapsed;
+
+    private long mTotalMillis;
+    private String mOutcome = SyncJournalEntry.OUTCOME_NO_DATA;
+    private String mError;
+
+    long lockWaitMillis;
+    boolean metered;
+    int daysRequested;
+    int responseLength;
+    int rowsParsed;
+    int rowsDeleted;
+    int rowsInserted;
+
+    /**
+     * @param syncMode One of the SyncJournalEntry.MODE_* values
+     */
+    SyncStats(String syncMode) {
+        mSyncMode = syncMode;
+        mStartedAtMillis = System.currentTimeMillis();
+        mStartedAtElapsed = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Starts timing the given stage. If another stage is still being timed, it is ended first.
+     *
+     * @param stage One of the STAGE_* constants
+     */
+    void beginStage(int stage) {
+        endStage();
+        mCurrentStage = stage;
+        mCurrentStageStartElapsed = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Stops timing the current stage, if any, and adds the elapsed time to that stage's total.
+     */
+    void endStage() {
+        if (mCurrentStage == -1) return;
+        mStageMillis[mCurrentStage] +=
+                SystemClock.elapsedRealtime() - mCurrentStageStartElapsed;
+        mCurrentStage = -1;
+    }
+
+    /**
+     * Records that every stage the sync needed completed successfully.
+     */
+    void succeeded() {
+        mOutcome = SyncJournalEntry.OUTCOME_SUCCESS;
+    }
+
+    /**
+     * Records the exception that ended the sync.
+     *
+     * @param e The exception thrown by one of the stages
+     */
+    void failed(Exception e) {
+        mOutcome = SyncJournalEntry.OUTCOME_FAILED;
+        mError = e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    /**
+     * Ends the current stage and freezes the total duration of the sync. Must be called once,
+     * after the last stage has run.
+     */
+    void finish() {
+        endStage();
+        mTotalMillis = SystemClock.elapsedRealtime() - mStartedAtElapsed;
+    }
+
+    /**
+     * @return The values to insert into the sync journal for this run
+     */
+    ContentValues toContentValues() {
+        ContentValues values = new ContentValues();
+        values.put(SyncJournalEntry.COLUMN_STARTED_AT, mStartedAtMillis);
+        values.put(SyncJournalEntry.COLUMN_SYNC_MODE, mSyncMode);
+        values.put(SyncJournalEntry.COLUMN_METERED, metered ? 1 : 0);
+        values.put(SyncJournalEntry.COLUMN_DAYS_REQUESTED, daysRequested);
+        values.put(SyncJournalEntry.COLUMN_OUTCOME, mOutcome);
+        values.put(SyncJournalEntry.COLUMN_ERROR, mError);
+        values.put(SyncJournalEntry.COLUMN_LOCK_WAIT_MILLIS, lockWaitMillis);
+        values.put(SyncJournalEntry.COLUMN_TOTAL_MILLIS, mTotalMillis);
+        values.put(SyncJournalEntry.COLUMN_FETCH_MILLIS, mStageMillis[STAGE_FETCH]);
+        values.put(SyncJournalEntry.COLUMN_PARSE_MILLIS, mStageMillis[STAGE_PARSE]);
+        values.put(SyncJournalEntry.COLUMN_PERSIST_MILLIS, mStageMillis[STAGE_PERSIST]);
+        values.put(SyncJournalEntry.COLUMN_WEAR_MILLIS, mStageMillis[STAGE_WEAR]);
+        values.put(SyncJournalEntry.COLUMN_NOTIFY_MILLIS, mStageMillis[STAGE_NOTIFY]);
+        values.put(SyncJournalEntry.COLUMN_RESPONSE_LENGTH, responseLength);
+        values.put(SyncJournalEntry.COLUMN_ROWS_PARSED, rowsParsed);
+        values.put(SyncJournalEntry.COLUMN_ROWS_DELETED, rowsDeleted);
+        values.put(SyncJournalEntry.COLUMN_ROWS_INSERTED, rowsInserted);
+        return values;
+    }
+
+    /**
+     * @return A one line summary of this run, suitable for logcat
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append(mSyncMode)
+                .append(metered ? " (metered, " : " (unmetered, ")
+                .append(daysRequested).append(" days) ")
+                .append(mOutcome)
+                .append(" in ").append(mTotalMillis).append("ms (")
+                .append("lock wait=").append(lockWaitMillis).append("ms, ");
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            if (stage > 0) builder.append(", ");
+            builder.append(STAGE_NAMES[stage]).append('=').append(mStageMillis[stage]).append("ms");
+        }
+        builder.append("), parsed=").append(rowsParsed)
+                .append(" deleted=").append(rowsDeleted)
+                .append(" inserted=").append(rowsInserted);
+        if (mError != null) {
+            builder.append(", error=").append(mError);
+        }
+        return builder.toString();
+    }
+}
@@ -16,7 +16,9 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.Context;
+import android.net.ConnectivityManager;
 import android.net.Uri;
+import android.support.v4.net.ConnectivityManagerCompat;
 import android.util.Log;
 
 import com.example.android.sunshine.data.SunshinePreferences;
@@ -67,8 +69,12 @@ public final class NetworkUtils {
     private static final String format = "json";
     /* The units we want our API to return */
     private static final String units = "metric";
-    /* The number of days we want our API to return */
-    private static final int numDays = 14;
+    /* The number of days we want our API to return for a regular sync */
+    public static final int DEFAULT_NUM_DAYS = 14;
+    /* Regular syncs on a metered connection only ask for this many days to keep payloads small */
+    public static final int METERED_NUM_DAYS = 7;
+    /* Prefetch syncs (charging and unmetered) ask for the longest range the API offers */
+    public static final int EXTENDED_NUM_DAYS = 16;
 
     /* The query parameter allows us to provide a location string to the API */
     private static final String QUERY_PARAM = "q";
@@ -85,7 +91,7 @@ public final class NetworkUtils {
 
     /**
      * Retrieves the proper URL to query for the weather data. The reason for both this method as
-     * well as {@link #buildUrlWithLocationQuery(String)} is two fold.
+     * well as {@link #buildUrlWithLocationQuery(String, int)} is two fold.
      * <p>
      * 1) You should be able to just use one method when you need to create the URL within the
      * app instead of calling both methods.
@@ -98,26 +104,54 @@ public final class NetworkUtils {
      * @return URL to query weather service
      */
     public static URL getUrl(Context context) {
+        return getUrl(context, DEFAULT_NUM_DAYS);
+    }
+
+    /**
+     * Same as {@link #getUrl(Context)}, but asks the weather service for a specific number of
+     * days of forecast.
+     *
+     * @param context used to access other Utility methods
+     * @param numDays The number of days of forecast to request
+     * @return URL to query weather service
+     */
+    public static URL getUrl(Context context, int numDays) {
         if (SunshinePreferences.isLocationLatLonAvailable(context)) {
             double[] preferredCoordinates = SunshinePreferences.getLocationCoordinates(context);
             double latitude = preferredCoordinates[0];
             double longitude = preferredCoordinates[1];
-            return buildUrlWithLatitudeLongitude(latitude, longitude);
+            return buildUrlWithLatitudeLongitude(latitude, longitude, numDays);
         } else {
             String locationQuery = SunshinePreferences.getPreferredWeatherLocation(context);
-            return buildUrlWithLocationQuery(locationQuery);
+            return buildUrlWithLocationQuery(locationQuery, numDays);
         }
     }
 
+    /**
+     * Returns whether the active network is metered, in which case syncs should download as
+     * little as possible. If there is no active network, this also returns true, as we can't
+     * tell what the next network will be.
+     *
+     * @param context used to access the ConnectivityManager
+     * @return true if the active network is metered
+     */
+    public static boolean isActiveNetworkMetered(Context context) {
+        ConnectivityManager connectivityManager = (ConnectivityManager)
+                context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
     /**
      * Builds the URL used to talk to the weather server using latitude and longitude of a
      * location.
      *
      * @param latitude  The latitude of the location
      * @param longitude The longitude of the location
+     * @param numDays   The number of days of forecast to request
      * @return The Url to use to query the weather server.
      */
-    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude) {
+    private static URL buildUrlWithLatitudeLongitude(Double latitude, Double longitude,
+                                                     int numDays) {
         Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
                 .appendQueryParameter(LAT_PARAM, String.valueOf(latitude))
                 .appendQueryParameter(LON_PARAM, String.valueOf(longitude))
@@ -141,9 +175,10 @@ public final class NetworkUtils {
      * on the query capabilities of the weather provider that we are using.
      *
      * @param locationQuery The location that will be queried for.
+     * @param numDays       The number of days of forecast to request
      * @return The URL to use to query the weather server.
      */
-    private static URL buildUrlWithLocationQuery(String locationQuery) {
+    private static URL buildUrlWithLocationQuery(String locationQuery, int numDays) {
         Uri weatherQueryUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
                 .appendQueryParameter(QUERY_PARAM, locationQuery)
                 .appendQueryParameter(FORMAT_PARAM, format)
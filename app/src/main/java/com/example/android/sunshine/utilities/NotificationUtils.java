@@ -5,139 +5,262 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.res.Resources;
-import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LruCache;
+import android.util.Log;
 
 import com.example.android.sunshine.DetailActivity;
 import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
 import com.example.android.sunshine.data.WeatherContract;
 
 public class NotificationUtils {
 
+    private static final String TAG = NotificationUtils.class.getSimpleName();
+
     /*
-     * The columns of data that we are interested in displaying within our notification to let
-     * the user know there is new weather data available.
+     * This notification ID can be used to access our notification after we've displayed it. This
+     * can be handy when we need to cancel the notification, or perhaps update it. This number is
+     * arbitrary and can be set to whatever you like. 3004 is in no way significant.
      */
-    public static final String[] WEATHER_NOTIFICATION_PROJECTION = {
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-    };
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
 
     /*
-     * We store the indices of the values in the array of Strings above to more quickly be able
-     * to access the data from our query. If the order of the Strings above changes, these
-     * indices must be adjusted to match the order of the Strings.
+     * Notifications are queued by the sync's notify stage, while it holds the weather table
+     * lock, and built and posted on a low priority thread of their own a moment later. A sync
+     * that queues before the post replaces the queued weather: several quick updates coalesce
+     * into one post, of the most recent weather.
      */
-    public static final int INDEX_WEATHER_ID = 0;
-    public static final int INDEX_MAX_TEMP = 1;
-    public static final int INDEX_MIN_TEMP = 2;
+    private static final Object sPostLock = new Object();
+
+    /* How long a queued notification waits for a newer one before it is posted */
+    private static final long POST_DELAY_MILLIS = 500;
+
+    /* The weather queued for the next post, null if there is none. Guarded by sPostLock */
+    private static TodaysWeather sPendingWeather;
+
+    /* Builds and posts the queued notification. Created on first use, guarded by sPostLock */
+    private static Handler sPostHandler;
+
+    /* There are about a dozen large art drawables, so a few entries cover any realistic week */
+    private static final int LARGE_ICON_CACHE_SIZE = 6;
+
+    /* Rendered and scaled large icons, keyed by the art resource ID */
+    private static final LruCache<Integer, Bitmap> sLargeIconCache =
+            new LruCache<>(LARGE_ICON_CACHE_SIZE);
 
     /*
-     * This notification ID can be used to access our notification after we've displayed it. This
-     * can be handy when we need to cancel the notification, or perhaps update it. This number is
-     * arbitrary and can be set to whatever you like. 3004 is in no way significant.
+     * The content intent only depends on the date, so it's reused until the day changes. Only
+     * touched on the post thread.
      */
-    private static final int WEATHER_NOTIFICATION_ID = 3004;
+    private static long sContentIntentDate = -1;
+    private static PendingIntent sContentIntent;
+
+    /**
+     * Queues a notification for the newly updated weather for today, replacing any queued one
+     * that wasn't posted yet. The weather is taken from the forecast that was just synced,
+     * rather than read back from our ContentProvider. The notification itself is built and
+     * posted by {@link #postQueuedNotification(Context)}, on the post thread, once the weather
+     * has been queued for {@link #POST_DELAY_MILLIS} without being replaced.
+     *
+     * @param context  Context used to use various Utility methods
+     * @param forecast The freshly synced forecast
+     */
+    public static void notifyUserOfNewWeather(Context context, ForecastSnapshot forecast) {
+
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        int todayPosition = forecast.indexOfDate(today);
+
+        /*
+         * If the forecast doesn't contain today, there's nothing to tell the user about. Otherwise,
+         * we want to show the notification.
+         */
+        if (todayPosition == -1) {
+            return;
+        }
+
+        TodaysWeather todaysWeather = new TodaysWeather(today,
+                forecast.getWeatherId(todayPosition),
+                forecast.getMaxTemp(todayPosition),
+                forecast.getMinTemp(todayPosition));
+
+        final Context appContext = context.getApplicationContext();
+        synchronized (sPostLock) {
+            /* Drop any update that hasn't been posted yet; this one supersedes it */
+            sPendingWeather = todaysWeather;
+
+            if (sPostHandler == null) {
+                HandlerThread thread = new HandlerThread("NotificationUtils",
+                        Process.THREAD_PRIORITY_BACKGROUND);
+                thread.start();
+                sPostHandler = new Handler(thread.getLooper());
+            }
+            /* Restarts the delay, so the post waits for the last of several quick updates */
+            sPostHandler.removeCallbacksAndMessages(null);
+            sPostHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        postQueuedNotification(appContext);
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Couldn't post the notification", e);
+                    }
+                }
+            }, POST_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Builds and posts the notification queued by {@link #notifyUserOfNewWeather}, if another
+     * caller hasn't posted it already. The queued weather is taken under the lock, and the
+     * notification built and posted outside it, so a sync queuing newer weather never waits
+     * for a post.
+     *
+     * @param context Context used to use various Utility methods
+     * @return true if a notification was posted
+     */
+    static boolean postQueuedNotification(Context context) {
+        TodaysWeather todaysWeather;
+        synchronized (sPostLock) {
+            todaysWeather = sPendingWeather;
+            sPendingWeather = null;
+        }
+        if (todaysWeather == null) {
+            return false;
+        }
+
+        postNotification(context.getApplicationContext(), todaysWeather);
+        return true;
+    }
 
     /**
-     * Constructs and displays a notification for the newly updated weather for today.
+     * Constructs and displays a notification for today's weather.
      *
-     * @param context Context used to query our ContentProvider and use various Utility methods
+     * @param context       Application context
+     * @param todaysWeather The most recent weather queued for today
      */
-    public static void notifyUserOfNewWeather(Context context) {
+    private static void postNotification(Context context, TodaysWeather todaysWeather) {
+
+        /* Weather ID as returned by API, used to identify the icon to be used */
+        int weatherId = todaysWeather.weatherId;
+        double high = todaysWeather.high;
+        double low = todaysWeather.low;
+
+        int largeArtResourceId = SunshineWeatherUtils
+                .getLargeArtResourceIdForWeatherCondition(weatherId);
 
-        /* Build the URI for today's weather in order to show up to date data in notification */
-        Uri todaysWeatherUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(SunshineDateUtils.normalizeDate(System.currentTimeMillis()));
+        /* Null if the art couldn't be rendered, then the notification has no large icon */
+        Bitmap largeIcon = getLargeIcon(context, largeArtResourceId);
+
+        String notificationTitle = context.getString(R.string.app_name);
+
+        String notificationText = getNotificationText(context, weatherId, high, low);
+
+        /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
+        int smallArtResourceId = SunshineWeatherUtils
+                .getSmallArtResourceIdForWeatherCondition(weatherId);
 
         /*
-         * The MAIN_FORECAST_PROJECTION array passed in as the second parameter is defined in our WeatherContract
-         * class and is used to limit the columns returned in our cursor.
+         * NotificationCompat Builder is a very convenient way to build backward-compatible
+         * notifications. In order to use it, we provide a context and specify a color for the
+         * notification, a couple of different icons, the title for the notification, and
+         * finally the text of the notification, which in our case in a summary of today's
+         * forecast.
          */
-        Cursor todayWeatherCursor = context.getContentResolver().query(
-                todaysWeatherUri,
-                WEATHER_NOTIFICATION_PROJECTION,
-                null,
-                null,
-                null);
+        NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
+                .setColor(ContextCompat.getColor(context,R.color.colorPrimary))
+                .setSmallIcon(smallArtResourceId)
+                .setLargeIcon(largeIcon)
+                .setContentTitle(notificationTitle)
+                .setContentText(notificationText)
+                .setAutoCancel(true);
+
+        notificationBuilder.setContentIntent(getContentIntent(context, todaysWeather.date));
+
+        NotificationManager notificationManager = (NotificationManager)
+                context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
+        notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
 
         /*
-         * If todayWeatherCursor is empty, moveToFirst will return false. If our cursor is not
-         * empty, we want to show the notification.
+         * Since we just showed a notification, save the current time. That way, we can check
+         * next time the weather is refreshed if we should show another notification.
          */
-        if (todayWeatherCursor.moveToFirst()) {
-
-            /* Weather ID as returned by API, used to identify the icon to be used */
-            int weatherId = todayWeatherCursor.getInt(INDEX_WEATHER_ID);
-            double high = todayWeatherCursor.getDouble(INDEX_MAX_TEMP);
-            double low = todayWeatherCursor.getDouble(INDEX_MIN_TEMP);
-
-            Resources resources = context.getResources();
-            int largeArtResourceId = SunshineWeatherUtils
-                    .getLargeArtResourceIdForWeatherCondition(weatherId);
-
-            Bitmap largeIcon = BitmapFactory.decodeResource(
-                    resources,
-                    largeArtResourceId);
-
-            String notificationTitle = context.getString(R.string.app_name);
-
-            String notificationText = getNotificationText(context, weatherId, high, low);
-
-            /* getSmallArtResourceIdForWeatherCondition returns the proper art to show given an ID */
-            int smallArtResourceId = SunshineWeatherUtils
-                    .getSmallArtResourceIdForWeatherCondition(weatherId);
-
-            /*
-             * NotificationCompat Builder is a very convenient way to build backward-compatible
-             * notifications. In order to use it, we provide a context and specify a color for the
-             * notification, a couple of different icons, the title for the notification, and
-             * finally the text of the notification, which in our case in a summary of today's
-             * forecast.
-             */
-            NotificationCompat.Builder notificationBuilder = new NotificationCompat.Builder(context)
-                    .setColor(ContextCompat.getColor(context,R.color.colorPrimary))
-                    .setSmallIcon(smallArtResourceId)
-                    .setLargeIcon(largeIcon)
-                    .setContentTitle(notificationTitle)
-                    .setContentText(notificationText)
-                    .setAutoCancel(true);
-
-            /*
-             * This Intent will be triggered when the user clicks the notification. In our case,
-             * we want to open Sunshine to the DetailActivity to display the newly updated weather.
-             */
-            Intent detailIntentForToday = new Intent(context, DetailActivity.class);
-            detailIntentForToday.setData(todaysWeatherUri);
-
-            TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
-            taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
-            PendingIntent resultPendingIntent = taskStackBuilder
-                    .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
-
-            notificationBuilder.setContentIntent(resultPendingIntent);
-
-            NotificationManager notificationManager = (NotificationManager)
-                    context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-            /* WEATHER_NOTIFICATION_ID allows you to update or cancel the notification later on */
-            notificationManager.notify(WEATHER_NOTIFICATION_ID, notificationBuilder.build());
-
-            /*
-             * Since we just showed a notification, save the current time. That way, we can check
-             * next time the weather is refreshed if we should show another notification.
-             */
-            SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+        SunshinePreferences.saveLastNotificationTime(context, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the large icon for the given art, rendered at the size the system displays large
+     * notification icons at. The art drawables are vectors on API 21 and up, which
+     * BitmapFactory can't decode, so the drawable itself is drawn into the bitmap. Icons are
+     * rendered once and then served from memory.
+     *
+     * @param context            Used to access resources
+     * @param largeArtResourceId The large art drawable for the weather condition
+     * @return The icon, ready to be handed to the notification builder, or null if the art
+     * couldn't be loaded
+     */
+    static Bitmap getLargeIcon(Context context, int largeArtResourceId) {
+        Bitmap largeIcon = sLargeIconCache.get(largeArtResourceId);
+        if (largeIcon != null) {
+            return largeIcon;
         }
 
-        /* Always close your cursor when you're done with it to avoid wasting resources. */
-        todayWeatherCursor.close();
+        Drawable art = ContextCompat.getDrawable(context, largeArtResourceId);
+        if (art == null) {
+            Log.w(TAG, "Couldn't load the large icon " + largeArtResourceId);
+            return null;
+        }
+
+        Resources resources = context.getResources();
+        int width = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width);
+        int height = resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height);
+        largeIcon = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        art.setBounds(0, 0, width, height);
+        art.draw(new Canvas(largeIcon));
+
+        sLargeIconCache.put(largeArtResourceId, largeIcon);
+        return largeIcon;
+    }
+
+    /**
+     * Returns the intent that opens DetailActivity for the given day when the user clicks the
+     * notification.
+     *
+     * @param context Used to build the intent
+     * @param date    Normalized date of the weather shown in the notification
+     * @return The PendingIntent for the notification
+     */
+    private static PendingIntent getContentIntent(Context context, long date) {
+        if (sContentIntent != null && sContentIntentDate == date) {
+            return sContentIntent;
+        }
+
+        /*
+         * This Intent will be triggered when the user clicks the notification. In our case,
+         * we want to open Sunshine to the DetailActivity to display the newly updated weather.
+         */
+        Uri todaysWeatherUri = WeatherContract.WeatherEntry.buildWeatherUriWithDate(date);
+        Intent detailIntentForToday = new Intent(context, DetailActivity.class);
+        detailIntentForToday.setData(todaysWeatherUri);
+
+        TaskStackBuilder taskStackBuilder = TaskStackBuilder.create(context);
+        taskStackBuilder.addNextIntentWithParentStack(detailIntentForToday);
+        sContentIntent = taskStackBuilder
+                .getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
+        sContentIntentDate = date;
+        return sContentIntent;
     }
 
     /**
@@ -174,4 +297,19 @@ public class NotificationUtils {
 
         return notificationText;
     }
+
+    /* Today's values, copied out of the forecast so the snapshot itself isn't kept alive */
+    private static final class TodaysWeather {
+        final long date;
+        final int weatherId;
+        final double high;
+        final double low;
+
+        TodaysWeather(long date, int weatherId, double high, double low) {
+            this.date = date;
+            this.weatherId = weatherId;
+            this.high = high;
+            this.low = low;
+        }
+    }
 }
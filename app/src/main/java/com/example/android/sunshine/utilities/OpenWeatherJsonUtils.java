@@ -15,11 +15,10 @@
  */
 package com.example.android.sunshine.utilities;
 
-import android.content.ContentValues;
 import android.content.Context;
 
+import com.example.android.sunshine.data.ForecastSnapshot;
 import com.example.android.sunshine.data.SunshinePreferences;
-import com.example.android.sunshine.data.WeatherContract;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -61,20 +60,17 @@ public final class OpenWeatherJsonUtils {
     private static final String OWM_MESSAGE_CODE = "cod";
 
     /**
-     * This method parses JSON from a web response and returns an array of Strings
-     * describing the weather over various days from the forecast.
-     * <p/>
-     * Later on, we'll be parsing the JSON into structured data within the
-     * getFullWeatherDataFromJson function, leveraging the data we have stored in the JSON. For
-     * now, we just convert the JSON into human-readable strings.
+     * This method parses JSON from a web response straight into primitive arrays. Unlike
+     * ContentValues, the resulting snapshot can be handed to the notification, the wearable and
+     * the UI without any of them going back to the database.
      *
      * @param forecastJsonStr JSON response from server
      *
-     * @return Array of Strings describing weather data
+     * @return The parsed forecast, null if the JSON contained an error code
      *
      * @throws JSONException If JSON data cannot be properly parsed
      */
-    public static ContentValues[] getWeatherContentValuesFromJson(Context context, String forecastJsonStr)
+    public static ForecastSnapshot getForecastFromJson(Context context, String forecastJsonStr)
             throws JSONException {
 
         JSONObject forecastJson = new JSONObject(forecastJsonStr);
@@ -105,7 +101,15 @@ public final class OpenWeatherJsonUtils {
 
         SunshinePreferences.setLocationDetails(context, cityLatitude, cityLongitude);
 
-        ContentValues[] weatherContentValues = new ContentValues[jsonWeatherArray.length()];
+        int numDays = jsonWeatherArray.length();
+        long[] dates = new long[numDays];
+        int[] weatherIds = new int[numDays];
+        double[] highs = new double[numDays];
+        double[] lows = new double[numDays];
+        double[] humidities = new double[numDays];
+        double[] pressures = new double[numDays];
+        double[] windSpeeds = new double[numDays];
+        double[] windDirections = new double[numDays];
 
         /*
          * OWM returns daily forecasts based upon the local time of the city that is being asked
@@ -118,18 +122,7 @@ public final class OpenWeatherJsonUtils {
 
         long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcDateForToday();
 
-        for (int i = 0; i < jsonWeatherArray.length(); i++) {
-
-            long dateTimeMillis;
-            double pressure;
-            int humidity;
-            double windSpeed;
-            double windDirection;
-
-            double high;
-            double low;
-
-            int weatherId;
+        for (int i = 0; i < numDays; i++) {
 
             /* Get the JSON object representing the day */
             JSONObject dayForecast = jsonWeatherArray.getJSONObject(i);
@@ -138,12 +131,12 @@ public final class OpenWeatherJsonUtils {
              * We ignore all the datetime values embedded in the JSON and assume that
              * the values are returned in-order by day (which is not guaranteed to be correct).
              */
-            dateTimeMillis = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
+            dates[i] = normalizedUtcStartDay + SunshineDateUtils.DAY_IN_MILLIS * i;
 
-            pressure = dayForecast.getDouble(OWM_PRESSURE);
-            humidity = dayForecast.getInt(OWM_HUMIDITY);
-            windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-            windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
+            pressures[i] = dayForecast.getDouble(OWM_PRESSURE);
+            humidities[i] = dayForecast.getInt(OWM_HUMIDITY);
+            windSpeeds[i] = dayForecast.getDouble(OWM_WINDSPEED);
+            windDirections[i] = dayForecast.getDouble(OWM_WIND_DIRECTION);
 
             /*
              * Description is in a child array called "weather", which is 1 element long.
@@ -152,7 +145,7 @@ public final class OpenWeatherJsonUtils {
             JSONObject weatherObject =
                     dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
 
-            weatherId = weatherObject.getInt(OWM_WEATHER_ID);
+            weatherIds[i] = weatherObject.getInt(OWM_WEATHER_ID);
 
             /*
              * Temperatures are sent by Open Weather Map in a child object called "temp".
@@ -163,22 +156,11 @@ public final class OpenWeatherJsonUtils {
              * others, and is just a bad variable name.
              */
             JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-            high = temperatureObject.getDouble(OWM_MAX);
-            low = temperatureObject.getDouble(OWM_MIN);
-
-            ContentValues weatherValues = new ContentValues();
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTimeMillis);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-            weatherContentValues[i] = weatherValues;
+            highs[i] = temperatureObject.getDouble(OWM_MAX);
+            lows[i] = temperatureObject.getDouble(OWM_MIN);
         }
 
-        return weatherContentValues;
+        return new ForecastSnapshot(dates, weatherIds, highs, lows,
+                humidities, pressures, windSpeeds, windDirections);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Measures how long a cold start of Sunshine takes, from the creation of the first activity to
+ * the first frame drawn and to the first forecast on screen. The results are logged once per
+ * process, under the "StartupMetrics" tag.
+ * <p>
+ * This also wraps {@link Trace} so the steps of the launch show up as named sections in systrace.
+ * Trace only exists on API 18 and up; on older devices the sections are simply skipped.
+ * <p>
+ * The forecast list reports each ViewHolder it creates until the first frame. Those created
+ * from a prewarmed view and those inflated on the main thread are counted apart, along with the
+ * main thread time spent on them, so the cost of inflation to the first frame can be compared
+ * with and without prewarming.
+ */
+public final class StartupMetrics {
+
+    private static final String TAG = StartupMetrics.class.getSimpleName();
+
+    private static long sLaunchStartedAt = -1;
+    private static boolean sFirstDrawReported;
+    private static boolean sFirstDataReported;
+
+    private static int sPrewarmedViewHolders;
+    private static int sInflatedViewHolders;
+    private static long sViewHolderNanos;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Starts a named section in systrace. Must be matched by {@link #endSection()} on the same
+     * thread.
+     *
+     * @param sectionName The name shown in systrace
+     */
+    public static void beginSection(String sectionName) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    /**
+     * Ends the section most recently started on this thread.
+     */
+    public static void endSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Records the start of the launch. Only the first call in the process counts, so recreating
+     * the activity (on rotation, for example) isn't mistaken for a cold start.
+     */
+    public static void launchStarted() {
+        if (sLaunchStartedAt == -1) {
+            sLaunchStartedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Reports the time to the first frame, the first time it is called.
+     */
+    public static void firstFrameDrawn() {
+        if (sFirstDrawReported || sLaunchStartedAt == -1) return;
+        sFirstDrawReported = true;
+        Log.i(TAG, "Time to first draw: " + (SystemClock.elapsedRealtime() - sLaunchStartedAt) + "ms");
+        Log.i(TAG, "ViewHolders before first draw: " + sPrewarmedViewHolders + " prewarmed, "
+                + sInflatedViewHolders + " inflated, "
+                + (sViewHolderNanos / 1000) + "us on the main thread");
+    }
+
+    /**
+     * Counts a ViewHolder created on the main thread before the first frame. Later ones are
+     * ignored.
+     *
+     * @param prewarmed true if its view was inflated ahead of time
+     * @param nanos     Time spent creating it on the main thread
+     */
+    public static void viewHolderCreated(boolean prewarmed, long nanos) {
+        if (sFirstDrawReported) return;
+        if (prewarmed) {
+            sPrewarmedViewHolders++;
+        } else {
+            sInflatedViewHolders++;
+        }
+        sViewHolderNanos += nanos;
+    }
+
+    /**
+     * Reports the time until the forecast's rows were formatted and applied to the list, the
+     * first time it is called with any.
+     *
+     * @param days The number of days applied
+     */
+    public static void firstDataLoaded(int days) {
+        if (sFirstDataReported || sLaunchStartedAt == -1) return;
+        sFirstDataReported = true;
+        Log.i(TAG, "Time to data: " + (SystemClock.elapsedRealtime() - sLaunchStartedAt)
+                + "ms (" + days + " days)");
+    }
+}
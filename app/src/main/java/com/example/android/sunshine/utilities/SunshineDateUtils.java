@@ -15,12 +15,17 @@
  */
 package com.example.android.sunshine.utilities;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.support.v4.util.LongSparseArray;
 import android.text.format.DateUtils;
 
 import com.example.android.sunshine.R;
 
 import java.text.SimpleDateFormat;
+import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +37,19 @@ public final class SunshineDateUtils {
     /* Milliseconds in a day */
     public static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
 
+    /*
+     * Friendly date Strings computed so far, keyed by normalized UTC date. The list rebinds the
+     * same couple of weeks over and over, so each String is only formatted once a day. Guarded
+     * by sFriendlyDateLock, as rows are formatted on background threads.
+     */
+    private static final Object sFriendlyDateLock = new Object();
+    private static final LongSparseArray<String> sShortFriendlyDates = new LongSparseArray<>();
+    private static final LongSparseArray<String> sFullFriendlyDates = new LongSparseArray<>();
+    private static long sFriendlyDateMemoStart;
+    private static long sFriendlyDateMemoExpiry = Long.MIN_VALUE;
+    private static Locale sFriendlyDateMemoLocale;
+    private static BroadcastReceiver sFriendlyDateInvalidator;
+
     /**
      * This method returns the number of milliseconds (UTC time) for today's date at midnight in
      * the local time zone. For example, if you live in California and the day is September 20th,
@@ -199,6 +217,78 @@ public final class SunshineDateUtils {
      * or "Friday"
      */
     public static String getFriendlyDateString(Context context, long normalizedUtcMidnight, boolean showFullDate) {
+        synchronized (sFriendlyDateLock) {
+            LongSparseArray<String> memo = getFriendlyDateMemo(context, showFullDate);
+
+            String friendlyDate = memo.get(normalizedUtcMidnight);
+            if (friendlyDate == null) {
+                friendlyDate = formatFriendlyDate(context, normalizedUtcMidnight, showFullDate);
+                memo.put(normalizedUtcMidnight, friendlyDate);
+            }
+            return friendlyDate;
+        }
+    }
+
+    /**
+     * Returns the memo of friendly date Strings for the current day, emptying both memos first
+     * if they have gone stale. Must be called while holding sFriendlyDateLock.
+     *
+     * @param context      Used to listen for time zone, clock and locale changes
+     * @param showFullDate Selects the memo of full or short date Strings
+     * @return The memo, keyed by normalized UTC date
+     */
+    private static LongSparseArray<String> getFriendlyDateMemo(Context context, boolean showFullDate) {
+        registerFriendlyDateInvalidator(context);
+
+        long now = System.currentTimeMillis();
+        Locale locale = Locale.getDefault();
+
+        /*
+         * "Today" and "Tomorrow" are relative to the UTC day, so every String expires at the
+         * next UTC midnight. Locale.getDefault returns the same instance until the locale
+         * changes, so comparing references is enough.
+         */
+        if (now >= sFriendlyDateMemoExpiry || now < sFriendlyDateMemoStart
+                || locale != sFriendlyDateMemoLocale) {
+            sShortFriendlyDates.clear();
+            sFullFriendlyDates.clear();
+            sFriendlyDateMemoStart = normalizeDate(now);
+            sFriendlyDateMemoExpiry = sFriendlyDateMemoStart + DAY_IN_MILLIS;
+            sFriendlyDateMemoLocale = locale;
+        }
+
+        return showFullDate ? sFullFriendlyDates : sShortFriendlyDates;
+    }
+
+    /**
+     * The memo already expires at midnight, but the time zone can change at any moment, and the
+     * clock can be set back past the start of the day. Listen for those, and for locale changes,
+     * and throw the memo away when they happen.
+     */
+    private static void registerFriendlyDateInvalidator(Context context) {
+        if (sFriendlyDateInvalidator != null) return;
+
+        sFriendlyDateInvalidator = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                synchronized (sFriendlyDateLock) {
+                    sFriendlyDateMemoExpiry = Long.MIN_VALUE;
+                }
+            }
+        };
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        filter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        context.getApplicationContext().registerReceiver(sFriendlyDateInvalidator, filter);
+    }
+
+    /**
+     * Builds the String returned by {@link #getFriendlyDateString(Context, long, boolean)}.
+     */
+    private static String formatFriendlyDate(Context context, long normalizedUtcMidnight, boolean showFullDate) {
 
         /*
          * NOTE: localDate should be localDateMidnightMillis and should be straight from the
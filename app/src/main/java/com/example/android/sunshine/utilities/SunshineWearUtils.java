@@ -1,137 +1,118 @@
 package com.example.android.sunshine.utilities;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.Bundle;
-import android.support.annotation.Nullable;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+import android.support.v4.util.LongSparseArray;
+import android.util.Base64;
 import android.util.Log;
 
-import com.android.annotations.NonNull;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks;
-import com.google.android.gms.common.api.GoogleApiClient.OnConnectionFailedListener;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.Asset;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.ForecastSnapshot;
+import com.example.android.sunshine.data.SunshinePreferences;
+
+import java.util.Map;
 
 /**
  * Created by kikkos on 12/29/2016.
  */
 
-public class SunshineWearUtils implements ConnectionCallbacks, OnConnectionFailedListener{
+public class SunshineWearUtils {
 
-    public static final String WEATHER_DATA_PATH = "/weather-data";
+    // each day of the forecast is its own data item, at this prefix followed by the day's date
+    public static final String FORECAST_PATH_PREFIX = "/forecast/";
     private static final String TAG = "WearUtils";
 
+    // the last payload acknowledged by the data layer, Base64 encoded, by date, see
+    // WearForecastPublisher.Store
+    private static final String PUBLISHED_PREFS = "wear_published_days";
+
+    // shared by every sync, as it remembers what the watch was sent. guarded by the class
+    private static WearForecastPublisher sPublisher;
+
     private Context mContext;
-    private double highOld = -9999;
-    private double highNew = -9999;
-    private double lowOld = -9999;
-    private double lowNew = -9999;
-    private int conditionIdOld = -9999;
-    private int conditionIdNew = -9999;
-    private GoogleApiClient mGoogleApiClient;
+    private WearForecastPublisher mPublisher;
 
     public SunshineWearUtils(Context context){
-        this.mContext = context;
-        mGoogleApiClient = new GoogleApiClient.Builder(mContext)
-                .addApi(Wearable.API)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .build();
-        mGoogleApiClient.connect();
+        this.mContext = context.getApplicationContext();
+        mPublisher = getPublisher(mContext);
     }
 
-    public void insertOldWeather(@NonNull double high, @NonNull double low, @NonNull int conditionId){
-        this.highOld = high;
-        this.lowOld = low;
-        this.conditionIdOld = conditionId;
+    /**
+     * Publishes the forecast from today onwards to the wearable data layer, one data item per
+     * day. A day is only put if its payload differs from the one last put, so an
+     * unchanged forecast costs no write and no watch wakeup, even right after the process
+     * started. A units change does push, as the unit is part of the payload. Days no longer in
+     * the forecast (past days, or days the new forecast doesn't cover) are deleted.
+     * <p>
+     * Only significant changes are put as urgent, which the data layer delivers right away,
+     * waking the watch. Every other change is left to the data layer's own batched, non-urgent
+     * delivery. See {@link WearForecastPublisher} for the urgency policy.
+     *
+     * @param forecast The forecast to publish
+     */
+    public void publishForecast(@NonNull ForecastSnapshot forecast){
+        publishForecast(forecast, SunshinePreferences.isMetric(mContext));
     }
 
-    public void insertNewWeather(@NonNull double high, @NonNull double low, @NonNull int conditionId){
-        this.highNew = high;
-        this.lowNew = low;
-        this.conditionIdNew = conditionId;
-
-        // will send weather data to wear device only if they have changed..
-        if (hasChanged()){
-            Log.v("TEST", "check finished");
-            sendWeatherData();
-        }
+    /**
+     * @param forecast The forecast to publish
+     * @param isMetric The unit the watch should display temperatures in
+     * @see #publishForecast(ForecastSnapshot)
+     */
+    public void publishForecast(@NonNull ForecastSnapshot forecast, boolean isMetric){
+        long today = SunshineDateUtils.normalizeDate(System.currentTimeMillis());
+        WearForecastPublisher.Result result = mPublisher.publish(forecast, isMetric, today);
+
+        Log.d(TAG, "Forecast days put: " + result.put + " (urgent: " + result.urgent
+                + "), deleted: " + result.deleted);
     }
 
-    public boolean hasChanged(){
-        if (highOld != highNew || lowOld != lowNew || conditionIdOld != conditionIdNew){
-            return true;
+    private static synchronized WearForecastPublisher getPublisher(Context context){
+        if (sPublisher == null) {
+            Resources resources = context.getResources();
+            // the gateway also starts connecting if it isn't already
+            sPublisher = new WearForecastPublisher(WearGateway.getInstance(context),
+                    new PreferencesStore(
+                            context.getSharedPreferences(PUBLISHED_PREFS, Context.MODE_PRIVATE)),
+                    resources.getInteger(R.integer.wear_urgent_days),
+                    resources.getInteger(R.integer.wear_urgent_temperature_delta_celsius));
         }
-        return false;
+        return sPublisher;
     }
 
-    public void sendWeatherData(){
-        // get the icon as a bitmap
-        int drawableIcon = SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(conditionIdNew);
-        Bitmap icon = Bitmap.createScaledBitmap(BitmapFactory.decodeResource(mContext.getResources(), drawableIcon), 70, 70, true);
-
-        PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_DATA_PATH);
-        putDataMapRequest.getDataMap().putString("high", SunshineWeatherUtils.formatTemperature(mContext,highNew));
-        putDataMapRequest.getDataMap().putString("low", SunshineWeatherUtils.formatTemperature(mContext, lowNew));
-        putDataMapRequest.getDataMap().putAsset("icon", toAsset(icon));
-        putDataMapRequest.getDataMap().putLong("timestamp", System.currentTimeMillis());
-
-        PutDataRequest request = putDataMapRequest.asPutDataRequest();
-        request.setUrgent();
-        Wearable.DataApi.putDataItem(mGoogleApiClient, request)
-                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                    @Override
-                    public void onResult(@android.support.annotation.NonNull DataApi.DataItemResult dataItemResult) {
-                        Log.d(TAG, "sending weather data was successful: " + dataItemResult.getStatus().isSuccess());
-                    }
-                });
-    }
+    /**
+     * Keeps the acknowledged payloads in PUBLISHED_PREFS, keyed by the day's date.
+     */
+    private static class PreferencesStore implements WearForecastPublisher.Store {
+        private final SharedPreferences mPreferences;
 
-    private static Asset toAsset(Bitmap bitmap) {
-        ByteArrayOutputStream byteStream = null;
-        try {
-            byteStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 100, byteStream);
-            return Asset.createFromBytes(byteStream.toByteArray());
-        } finally {
-            if (null != byteStream) {
-                try {
-                    byteStream.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
+        PreferencesStore(SharedPreferences preferences){
+            mPreferences = preferences;
         }
-    }
 
-    @Override
-    public void onConnected(@Nullable Bundle bundle) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnected: " + bundle);
+        @Override
+        public LongSparseArray<byte[]> load(){
+            LongSparseArray<byte[]> days = new LongSparseArray<>();
+            for (Map.Entry<String, ?> day : mPreferences.getAll().entrySet()) {
+                days.put(Long.parseLong(day.getKey()),
+                        Base64.decode((String) day.getValue(), Base64.NO_WRAP));
+            }
+            return days;
         }
-    }
 
-    @Override
-    public void onConnectionSuspended(int i) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionSuspended: " + i);
+        @Override
+        public void put(long date, byte[] payload){
+            mPreferences.edit()
+                    .putString(String.valueOf(date),
+                            Base64.encodeToString(payload, Base64.NO_WRAP))
+                    .apply();
         }
-    }
 
-    @Override
-    public void onConnectionFailed(@android.support.annotation.NonNull ConnectionResult connectionResult) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionFailed: " + connectionResult);
+        @Override
+        public void remove(long date){
+            mPreferences.edit().remove(String.valueOf(date)).apply();
         }
     }
 }
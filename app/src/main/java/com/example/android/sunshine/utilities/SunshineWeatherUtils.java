@@ -21,6 +21,8 @@ import android.util.Log;
 import com.example.android.sunshine.R;
 import com.example.android.sunshine.data.SunshinePreferences;
 
+import java.util.Locale;
+
 /**
  * Contains useful utilities for a weather app, such as conversion between Celsius and Fahrenheit,
  * from kph to mph, and from degrees to NSEW.  It also contains the mapping of weather condition
@@ -37,7 +39,7 @@ public final class SunshineWeatherUtils {
      *
      * @return Temperature in degrees Fahrenheit (°F)
      */
-    private static double celsiusToFahrenheit(double temperatureInCelsius) {
+    static double celsiusToFahrenheit(double temperatureInCelsius) {
         double temperatureInFahrenheit = (temperatureInCelsius * 1.8) + 32;
         return temperatureInFahrenheit;
     }
@@ -47,6 +49,9 @@ public final class SunshineWeatherUtils {
      * the app may need to display the temperature in Fahrenheit. This method will perform that
      * temperature conversion if necessary. It will also format the temperature so that no
      * decimal points show. Temperatures will be formatted to the following form: "21°"
+     * <p>
+     * The Strings come from {@link TemperatureFormatCache}, so formatting the same temperature
+     * twice returns the same String without touching SharedPreferences or allocating.
      *
      * @param context     Android Context to access preferences and resources
      * @param temperature Temperature in degrees Celsius (°C)
@@ -55,14 +60,7 @@ public final class SunshineWeatherUtils {
      * "21°"
      */
     public static String formatTemperature(Context context, double temperature) {
-        if (!SunshinePreferences.isMetric(context)) {
-            temperature = celsiusToFahrenheit(temperature);
-        }
-
-        int temperatureFormatResourceId = R.string.format_temperature;
-
-        /* For presentation, assume the user doesn't care about tenths of a degree. */
-        return String.format(context.getString(temperatureFormatResourceId), temperature);
+        return TemperatureFormatCache.format(context, temperature);
     }
 
     /**
@@ -131,9 +129,155 @@ public final class SunshineWeatherUtils {
         return String.format(context.getString(windFormat), windSpeed, direction);
     }
 
+    /*
+     * OpenWeatherMap condition IDs all fall between these two values. Everything we know about a
+     * condition is stored in dense tables indexed by (ID - MIN_CONDITION_ID), so looking up the
+     * description or art for a condition is a single array access.
+     */
+    private static final int MIN_CONDITION_ID = 200;
+    private static final int MAX_CONDITION_ID = 962;
+    private static final int CONDITION_COUNT = MAX_CONDITION_ID - MIN_CONDITION_ID + 1;
+
+    /* 0 in these tables means we don't know the condition */
+    private static final int[] sConditionStringIds = new int[CONDITION_COUNT];
+    private static final int[] sConditionSmallArtIds = new int[CONDITION_COUNT];
+    private static final int[] sConditionLargeArtIds = new int[CONDITION_COUNT];
+
+    static {
+        /*
+         * Based on weather code data for Open Weather Map.
+         * See http://openweathermap.org/weather-conditions for a list of all IDs
+         *
+         * Ranges are listed in order of precedence: a condition that is already set is never
+         * overwritten. That is why 761 shows fog even though it is also listed with the storms.
+         */
+        setConditionString(200, 232, R.string.condition_2xx);
+        setConditionString(300, 321, R.string.condition_3xx);
+
+        final int[] individualConditions = {
+                500, R.string.condition_500,
+                501, R.string.condition_501,
+                502, R.string.condition_502,
+                503, R.string.condition_503,
+                504, R.string.condition_504,
+                511, R.string.condition_511,
+                520, R.string.condition_520,
+                531, R.string.condition_531,
+                600, R.string.condition_600,
+                601, R.string.condition_601,
+                602, R.string.condition_602,
+                611, R.string.condition_611,
+                612, R.string.condition_612,
+                615, R.string.condition_615,
+                616, R.string.condition_616,
+                620, R.string.condition_620,
+                621, R.string.condition_621,
+                622, R.string.condition_622,
+                701, R.string.condition_701,
+                711, R.string.condition_711,
+                721, R.string.condition_721,
+                731, R.string.condition_731,
+                741, R.string.condition_741,
+                751, R.string.condition_751,
+                761, R.string.condition_761,
+                762, R.string.condition_762,
+                771, R.string.condition_771,
+                781, R.string.condition_781,
+                800, R.string.condition_800,
+                801, R.string.condition_801,
+                802, R.string.condition_802,
+                803, R.string.condition_803,
+                804, R.string.condition_804,
+                900, R.string.condition_900,
+                901, R.string.condition_901,
+                902, R.string.condition_902,
+                903, R.string.condition_903,
+                904, R.string.condition_904,
+                905, R.string.condition_905,
+                906, R.string.condition_906,
+                951, R.string.condition_951,
+                952, R.string.condition_952,
+                953, R.string.condition_953,
+                954, R.string.condition_954,
+                955, R.string.condition_955,
+                956, R.string.condition_956,
+                957, R.string.condition_957,
+                958, R.string.condition_958,
+                959, R.string.condition_959,
+                960, R.string.condition_960,
+                961, R.string.condition_961,
+                962, R.string.condition_962,
+        };
+        for (int i = 0; i < individualConditions.length; i += 2) {
+            setConditionString(individualConditions[i], individualConditions[i],
+                    individualConditions[i + 1]);
+        }
+
+        setConditionArt(200, 232, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(300, 321, R.drawable.ic_light_rain, R.drawable.art_light_rain);
+        setConditionArt(500, 504, R.drawable.ic_rain, R.drawable.art_rain);
+        setConditionArt(511, 511, R.drawable.ic_snow, R.drawable.art_snow);
+        setConditionArt(520, 531, R.drawable.ic_rain, R.drawable.art_rain);
+        setConditionArt(600, 622, R.drawable.ic_snow, R.drawable.art_snow);
+        setConditionArt(701, 761, R.drawable.ic_fog, R.drawable.art_fog);
+        setConditionArt(761, 761, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(771, 771, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(781, 781, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(800, 800, R.drawable.ic_clear, R.drawable.art_clear);
+        setConditionArt(801, 801, R.drawable.ic_light_clouds, R.drawable.art_light_clouds);
+        setConditionArt(802, 804, R.drawable.ic_cloudy, R.drawable.art_clouds);
+        setConditionArt(900, 906, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(958, 962, R.drawable.ic_storm, R.drawable.art_storm);
+        setConditionArt(951, 957, R.drawable.ic_clear, R.drawable.art_clear);
+    }
+
+    private static void setConditionString(int fromId, int toId, int stringId) {
+        for (int id = fromId; id <= toId; id++) {
+            int index = id - MIN_CONDITION_ID;
+            if (sConditionStringIds[index] == 0) {
+                sConditionStringIds[index] = stringId;
+            }
+        }
+    }
+
+    private static void setConditionArt(int fromId, int toId, int smallArtId, int largeArtId) {
+        for (int id = fromId; id <= toId; id++) {
+            int index = id - MIN_CONDITION_ID;
+            if (sConditionSmallArtIds[index] == 0) {
+                sConditionSmallArtIds[index] = smallArtId;
+                sConditionLargeArtIds[index] = largeArtId;
+            }
+        }
+    }
+
+    /**
+     * @return The index of the condition in the condition tables, -1 if it's outside them
+     */
+    private static int conditionIndex(int weatherId) {
+        if (weatherId < MIN_CONDITION_ID || weatherId > MAX_CONDITION_ID) return -1;
+        return weatherId - MIN_CONDITION_ID;
+    }
+
+    /*
+     * Descriptions resolved so far, for the locale they were resolved in. Filling in an entry
+     * from two threads at once is harmless, as both would store an equal String.
+     */
+    private static final class ConditionDescriptions {
+        final Locale locale;
+        final String[] descriptions = new String[CONDITION_COUNT];
+
+        ConditionDescriptions(Locale locale) {
+            this.locale = locale;
+        }
+    }
+
+    private static volatile ConditionDescriptions sConditionDescriptions;
+
     /**
      * Helper method to provide the string according to the weather
      * condition id returned by the OpenWeatherMap call.
+     * <p>
+     * Descriptions are looked up once per locale and then served from memory.
      *
      * @param context   Android context
      * @param weatherId from OpenWeatherMap API response
@@ -142,173 +286,25 @@ public final class SunshineWeatherUtils {
      * @return String for the weather condition, null if no relation is found.
      */
     public static String getStringForWeatherCondition(Context context, int weatherId) {
-        int stringId;
-        if (weatherId >= 200 && weatherId <= 232) {
-            stringId = R.string.condition_2xx;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            stringId = R.string.condition_3xx;
-        } else switch (weatherId) {
-            case 500:
-                stringId = R.string.condition_500;
-                break;
-            case 501:
-                stringId = R.string.condition_501;
-                break;
-            case 502:
-                stringId = R.string.condition_502;
-                break;
-            case 503:
-                stringId = R.string.condition_503;
-                break;
-            case 504:
-                stringId = R.string.condition_504;
-                break;
-            case 511:
-                stringId = R.string.condition_511;
-                break;
-            case 520:
-                stringId = R.string.condition_520;
-                break;
-            case 531:
-                stringId = R.string.condition_531;
-                break;
-            case 600:
-                stringId = R.string.condition_600;
-                break;
-            case 601:
-                stringId = R.string.condition_601;
-                break;
-            case 602:
-                stringId = R.string.condition_602;
-                break;
-            case 611:
-                stringId = R.string.condition_611;
-                break;
-            case 612:
-                stringId = R.string.condition_612;
-                break;
-            case 615:
-                stringId = R.string.condition_615;
-                break;
-            case 616:
-                stringId = R.string.condition_616;
-                break;
-            case 620:
-                stringId = R.string.condition_620;
-                break;
-            case 621:
-                stringId = R.string.condition_621;
-                break;
-            case 622:
-                stringId = R.string.condition_622;
-                break;
-            case 701:
-                stringId = R.string.condition_701;
-                break;
-            case 711:
-                stringId = R.string.condition_711;
-                break;
-            case 721:
-                stringId = R.string.condition_721;
-                break;
-            case 731:
-                stringId = R.string.condition_731;
-                break;
-            case 741:
-                stringId = R.string.condition_741;
-                break;
-            case 751:
-                stringId = R.string.condition_751;
-                break;
-            case 761:
-                stringId = R.string.condition_761;
-                break;
-            case 762:
-                stringId = R.string.condition_762;
-                break;
-            case 771:
-                stringId = R.string.condition_771;
-                break;
-            case 781:
-                stringId = R.string.condition_781;
-                break;
-            case 800:
-                stringId = R.string.condition_800;
-                break;
-            case 801:
-                stringId = R.string.condition_801;
-                break;
-            case 802:
-                stringId = R.string.condition_802;
-                break;
-            case 803:
-                stringId = R.string.condition_803;
-                break;
-            case 804:
-                stringId = R.string.condition_804;
-                break;
-            case 900:
-                stringId = R.string.condition_900;
-                break;
-            case 901:
-                stringId = R.string.condition_901;
-                break;
-            case 902:
-                stringId = R.string.condition_902;
-                break;
-            case 903:
-                stringId = R.string.condition_903;
-                break;
-            case 904:
-                stringId = R.string.condition_904;
-                break;
-            case 905:
-                stringId = R.string.condition_905;
-                break;
-            case 906:
-                stringId = R.string.condition_906;
-                break;
-            case 951:
-                stringId = R.string.condition_951;
-                break;
-            case 952:
-                stringId = R.string.condition_952;
-                break;
-            case 953:
-                stringId = R.string.condition_953;
-                break;
-            case 954:
-                stringId = R.string.condition_954;
-                break;
-            case 955:
-                stringId = R.string.condition_955;
-                break;
-            case 956:
-                stringId = R.string.condition_956;
-                break;
-            case 957:
-                stringId = R.string.condition_957;
-                break;
-            case 958:
-                stringId = R.string.condition_958;
-                break;
-            case 959:
-                stringId = R.string.condition_959;
-                break;
-            case 960:
-                stringId = R.string.condition_960;
-                break;
-            case 961:
-                stringId = R.string.condition_961;
-                break;
-            case 962:
-                stringId = R.string.condition_962;
-                break;
-            default:
-                return context.getString(R.string.condition_unknown, weatherId);
+        int index = conditionIndex(weatherId);
+        int stringId = index == -1 ? 0 : sConditionStringIds[index];
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
 
-        return context.getString(stringId);
+        Locale locale = Locale.getDefault();
+        ConditionDescriptions descriptions = sConditionDescriptions;
+        if (descriptions == null || !descriptions.locale.equals(locale)) {
+            descriptions = new ConditionDescriptions(locale);
+            sConditionDescriptions = descriptions;
+        }
+
+        String description = descriptions.descriptions[index];
+        if (description == null) {
+            description = context.getString(stringId);
+            descriptions.descriptions[index] = description;
+        }
+        return description;
     }
 
     /**
@@ -323,41 +319,12 @@ public final class SunshineWeatherUtils {
      * @param weatherId from OpenWeatherMap API response
      *                  See http://openweathermap.org/weather-conditions for a list of all IDs
      *
-     * @return resource id for the corresponding icon. -1 if no relation is found.
+     * @return resource id for the corresponding icon. The storm icon if no relation is found.
      */
     public static int getSmallArtResourceIdForWeatherCondition(int weatherId) {
-
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.ic_clear;
+        int index = conditionIndex(weatherId);
+        if (index != -1 && sConditionSmallArtIds[index] != 0) {
+            return sConditionSmallArtIds[index];
         }
 
         Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
@@ -376,44 +343,15 @@ public final class SunshineWeatherUtils {
      * @param weatherId from OpenWeatherMap API response
      *                  See http://openweathermap.org/weather-conditions for a list of all IDs
      *
-     * @return resource ID for the corresponding icon. -1 if no relation is found.
+     * @return resource ID for the corresponding icon. The storm art if no relation is found.
      */
     public static int getLargeArtResourceIdForWeatherCondition(int weatherId) {
-
-        /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.art_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.art_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.art_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.art_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.art_fog;
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.art_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.art_clouds;
-        } else if (weatherId >= 900 && weatherId <= 906) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 958 && weatherId <= 962) {
-            return R.drawable.art_storm;
-        } else if (weatherId >= 951 && weatherId <= 957) {
-            return R.drawable.art_clear;
+        int index = conditionIndex(weatherId);
+        if (index != -1 && sConditionLargeArtIds[index] != 0) {
+            return sConditionLargeArtIds[index];
         }
 
         Log.e(LOG_TAG, "Unknown Weather: " + weatherId);
         return R.drawable.art_storm;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+
+import com.example.android.sunshine.R;
+import com.example.android.sunshine.data.SunshinePreferences;
+
+import java.util.Locale;
+
+/**
+ * Backs {@link SunshineWeatherUtils#formatTemperature(Context, double)} with a table of
+ * temperature Strings formatted ahead of time. Temperatures are displayed without decimals, so
+ * every temperature anyone will realistically see maps to one of a few hundred Strings, and the
+ * same String instance is handed out every time.
+ * <p>
+ * The table is built for the user's unit system and the current locale. It is rebuilt when the
+ * units preference changes, which is a cheap check against the SunshinePreferences snapshot, or
+ * when the locale changes.
+ */
+final class TemperatureFormatCache {
+
+    /*
+     * Range of the table, in the unit displayed to the user. It covers the coldest and hottest
+     * temperatures ever recorded in either unit; anything outside is formatted on demand.
+     */
+    private static final int MIN_TEMPERATURE = -130;
+    private static final int MAX_TEMPERATURE = 140;
+
+    private static final class Table {
+        final boolean isMetric;
+        final Locale locale;
+        final String[] strings;
+
+        Table(boolean isMetric, Locale locale, String[] strings) {
+            this.isMetric = isMetric;
+            this.locale = locale;
+            this.strings = strings;
+        }
+    }
+
+    private static volatile Table sTable;
+
+    private TemperatureFormatCache() {
+    }
+
+    /**
+     * Formats a temperature as "21°", converting it to fahrenheit if that is what the user
+     * prefers.
+     *
+     * @param context     Used to access preferences and resources
+     * @param temperature Temperature in degrees Celsius (°C)
+     * @return The formatted temperature, in the user's preferred unit
+     */
+    static String format(Context context, double temperature) {
+        Table table = getTable(context);
+
+        if (!table.isMetric) {
+            temperature = SunshineWeatherUtils.celsiusToFahrenheit(temperature);
+        }
+
+        long rounded = roundHalfUp(temperature);
+        if (rounded >= MIN_TEMPERATURE && rounded <= MAX_TEMPERATURE) {
+            return table.strings[(int) (rounded - MIN_TEMPERATURE)];
+        }
+
+        return String.format(context.getString(R.string.format_temperature), temperature);
+    }
+
+    /**
+     * @param celsius  Temperature in degrees Celsius (°C)
+     * @param isMetric true to display it in Celsius, false in Fahrenheit
+     * @return The number {@link #format} displays for the temperature, in whole degrees
+     */
+    static long toDisplayedDegrees(double celsius, boolean isMetric) {
+        return roundHalfUp(isMetric ? celsius : SunshineWeatherUtils.celsiusToFahrenheit(celsius));
+    }
+
+    /**
+     * Rounds the same way the "%1.0f" format does, half away from zero, so that the table gives
+     * the same result as formatting the temperature directly. Math.round would round -2.5 to -2
+     * rather than -3.
+     */
+    private static long roundHalfUp(double value) {
+        double magnitude = Math.abs(value);
+        long whole = (long) magnitude;
+        long rounded = (magnitude - whole) >= 0.5 ? whole + 1 : whole;
+        return value < 0 ? -rounded : rounded;
+    }
+
+    private static Table getTable(Context context) {
+        Table table = sTable;
+        boolean isMetric = SunshinePreferences.isMetric(context);
+        Locale locale = Locale.getDefault();
+
+        if (table == null || table.isMetric != isMetric || !table.locale.equals(locale)) {
+            table = buildTable(context, isMetric, locale);
+            sTable = table;
+        }
+        return table;
+    }
+
+    private static Table buildTable(Context context, boolean isMetric, Locale locale) {
+        String format = context.getString(R.string.format_temperature);
+        String[] strings = new String[MAX_TEMPERATURE - MIN_TEMPERATURE + 1];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = String.format(locale, format, (double) (MIN_TEMPERATURE + i));
+        }
+        return new Table(isMetric, locale, strings);
+    }
+}
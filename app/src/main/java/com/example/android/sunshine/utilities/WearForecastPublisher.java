@@ -0,0 +1,223 @@
+package com.example.android.sunshine.utilities;
+
+import android.support.annotation.NonNull;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * The part of {@link SunshineWearUtils} that doesn't need a Context: it decides which days of a
+ * forecast are put, which are deleted and which puts are urgent, and records the outcome of each.
+ * The preferences and resources it needs are handed to it, so the local JVM tests can drive it
+ * through a stand-in transport.
+ * <p>
+ * One instance is shared by every sync of the process, as it remembers what the watch was sent.
+ */
+final class WearForecastPublisher {
+
+    /**
+     * Keeps the payload of each day acknowledged by the data layer, so a new process neither
+     * pushes days the watch already has nor treats them as unknown to the watch.
+     */
+    interface Store {
+        /**
+         * @return The payload of every day acknowledged, by date
+         */
+        LongSparseArray<byte[]> load();
+
+        void put(long date, byte[] payload);
+
+        void remove(long date);
+    }
+
+    /**
+     * What a call to {@link #publish} sent.
+     */
+    static final class Result {
+        int put;
+        int urgent;
+        int deleted;
+    }
+
+    private final WearTransport mTransport;
+    private final Store mStore;
+
+    // thresholds of the urgency policy, see isUrgent
+    private final int mUrgentDays;
+    private final int mUrgentTemperatureDeltaCelsius;
+
+    // the payload of every day put, by date, seeded from the store on first use. lets a sync put
+    // only the days that changed, delete the ones that left the forecast and compare a change
+    // against what the watch shows. guarded by itself
+    private final LongSparseArray<byte[]> mPublishedDays = new LongSparseArray<>();
+    private boolean mPublishedDaysLoaded;
+
+    /**
+     * @param transport                     Carries the data items to the watch
+     * @param store                         Keeps the acknowledged payloads
+     * @param urgentDays                    Only changes to this many days from today can be urgent
+     * @param urgentTemperatureDeltaCelsius A change of the high or low of at least this much is
+     *                                      urgent
+     */
+    WearForecastPublisher(WearTransport transport, Store store, int urgentDays,
+                          int urgentTemperatureDeltaCelsius) {
+        mTransport = transport;
+        mStore = store;
+        mUrgentDays = urgentDays;
+        mUrgentTemperatureDeltaCelsius = urgentTemperatureDeltaCelsius;
+    }
+
+    /**
+     * See {@link SunshineWearUtils#publishForecast(ForecastSnapshot)}.
+     *
+     * @param forecast The forecast to publish
+     * @param isMetric The unit the watch should display temperatures in
+     * @param today    Today's normalized date; days before it are deleted
+     * @return The counts of what was sent
+     */
+    Result publish(@NonNull ForecastSnapshot forecast, boolean isMetric, long today) {
+        Result result = new Result();
+
+        synchronized (mPublishedDays) {
+            loadPublishedDays(today, result);
+
+            for (int i = 0; i < forecast.size(); i++) {
+                long date = forecast.getDate(i);
+                if (date < today) continue;
+
+                byte[] payload = WearWeatherPayload.encode(forecast.getWeatherId(i),
+                        forecast.getMaxTemp(i), forecast.getMinTemp(i), isMetric);
+                byte[] published = mPublishedDays.get(date);
+                if (Arrays.equals(published, payload)) continue;
+
+                boolean isUrgent = isUrgent(date, today, published, payload);
+                if (isUrgent) result.urgent++;
+                // queued by the gateway until it is connected
+                mTransport.putDataItem(getDayPath(date), payload, isUrgent,
+                        new PublishCallback(date, payload, false));
+                mPublishedDays.put(date, payload);
+                result.put++;
+            }
+
+            for (int i = mPublishedDays.size() - 1; i >= 0; i--) {
+                long date = mPublishedDays.keyAt(i);
+                if (date < today || forecast.indexOfDate(date) < 0) {
+                    mTransport.deleteDataItems(getDayPath(date),
+                            new PublishCallback(date, mPublishedDays.valueAt(i), true));
+                    mPublishedDays.removeAt(i);
+                    result.deleted++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The urgency policy. A change is urgent if it is to one of the first {@code urgentDays}
+     * days and the watch would show it differently at a glance: the weather icon changes, the
+     * unit changes, or the high or low moves by at least {@code urgentTemperatureDeltaCelsius}.
+     * A day never put before is urgent too, since what the watch shows for it is unknown.
+     *
+     * @param date     The day being put
+     * @param today    Today's normalized date
+     * @param previous The payload last put for that day, null if none
+     * @param payload  The new payload
+     * @return true if the put should be urgent
+     */
+    private boolean isUrgent(long date, long today, byte[] previous, byte[] payload) {
+        if (date >= today + mUrgentDays * SunshineDateUtils.DAY_IN_MILLIS) return false;
+        if (previous == null) return true;
+
+        if (WearWeatherPayload.getFlags(previous) != WearWeatherPayload.getFlags(payload)) {
+            return true;
+        }
+
+        int previousIcon = SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(
+                WearWeatherPayload.getConditionId(previous));
+        int icon = SunshineWeatherUtils.getSmallArtResourceIdForWeatherCondition(
+                WearWeatherPayload.getConditionId(payload));
+        if (previousIcon != icon) return true;
+
+        /* Both payloads are in the same unit, the one the threshold is converted to */
+        boolean isMetric = (WearWeatherPayload.getFlags(payload)
+                & WearWeatherPayload.FLAG_METRIC) != 0;
+        double threshold = isMetric
+                ? mUrgentTemperatureDeltaCelsius : mUrgentTemperatureDeltaCelsius * 1.8;
+        int highDelta = Math.abs(WearWeatherPayload.getHighDegrees(payload)
+                - WearWeatherPayload.getHighDegrees(previous));
+        int lowDelta = Math.abs(WearWeatherPayload.getLowDegrees(payload)
+                - WearWeatherPayload.getLowDegrees(previous));
+        return Math.max(highDelta, lowDelta) >= threshold;
+    }
+
+    /**
+     * Seeds the days put from the store, the first time it is called. Stored days before today
+     * are removed from the store there and then, and deleted from the data layer without
+     * waiting for the outcome, as the watch no longer shows them either way.
+     *
+     * @param today  Today's normalized date
+     * @param result Counts the days deleted
+     */
+    private void loadPublishedDays(long today, Result result) {
+        if (mPublishedDaysLoaded) return;
+        mPublishedDaysLoaded = true;
+
+        LongSparseArray<byte[]> days = mStore.load();
+        for (int i = 0; i < days.size(); i++) {
+            long date = days.keyAt(i);
+            if (date < today) {
+                mStore.remove(date);
+                mTransport.deleteDataItems(getDayPath(date), null);
+                result.deleted++;
+            } else {
+                mPublishedDays.put(date, days.valueAt(i));
+            }
+        }
+    }
+
+    private static String getDayPath(long date) {
+        return SunshineWearUtils.FORECAST_PATH_PREFIX + date;
+    }
+
+    /**
+     * Records the outcome of a put or a delete of a day, unless the day was put or deleted again
+     * since. A success is kept in the store. A failure is undone in memory, so the next sync
+     * tries again.
+     */
+    private class PublishCallback implements WearTransport.SendCallback {
+        private final long mDate;
+        private final byte[] mPayload;
+        private final boolean mIsDelete;
+
+        PublishCallback(long date, byte[] payload, boolean isDelete) {
+            mDate = date;
+            mPayload = payload;
+            mIsDelete = isDelete;
+        }
+
+        @Override
+        public void onSendResult(String path, boolean success) {
+            synchronized (mPublishedDays) {
+                byte[] current = mPublishedDays.get(mDate);
+                if (mIsDelete) {
+                    if (current != null) return;
+                    if (success) {
+                        mStore.remove(mDate);
+                    } else {
+                        mPublishedDays.put(mDate, mPayload);
+                    }
+                } else {
+                    if (!Arrays.equals(current, mPayload)) return;
+                    if (success) {
+                        mStore.put(mDate, mPayload);
+                    } else {
+                        mPublishedDays.remove(mDate);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.android.sunshine.utilities;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks;
+import com.google.android.gms.common.api.GoogleApiClient.OnConnectionFailedListener;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * The {@link WearTransport} of the app: the one connection of this process to the Wearable API.
+ * It is built and connected the first time it is needed and then kept for the life of the
+ * process, rather than building a new GoogleApiClient for every sync.
+ * <p>
+ * Data items put or deleted while the client isn't connected yet are queued, and sent as soon
+ * as it is. Only the latest operation per path is kept, since it overrides any earlier one on
+ * the same path anyway; an operation replaced in the queue counts as dropped. So does one
+ * still queued when the connection fails, or one the Wearable API reports as failed. One sent
+ * more than {@link #LATE_SEND_MILLIS} after it was queued counts as late. Each urgent put that
+ * succeeds counts as a watch wakeup, as the data layer delivers it right away rather than in
+ * its next batch. The time taken to connect is logged, and so are these counts when debug
+ * logging is enabled for the WearGateway tag.
+ * <p>
+ * The {@link SendCallback} of an operation replaced in the queue isn't called; the callback of
+ * its replacement is. Callbacks are called on the main thread, or on the thread of the
+ * connection failure.
+ */
+public final class WearGateway implements WearTransport, ConnectionCallbacks,
+        OnConnectionFailedListener {
+
+    private static final String TAG = "WearGateway";
+
+    /* Items that wait longer than this for the connection are reported as late */
+    private static final long LATE_SEND_MILLIS = 5000;
+
+    private static WearGateway sInstance;
+
+    private final GoogleApiClient mGoogleApiClient;
+
+    /* Guarded by this */
+    private final LinkedHashMap<String, QueuedItem> mQueue = new LinkedHashMap<>();
+    private long mConnectStartedAt = -1;
+    private int mSentCount;
+    private int mLateCount;
+    private int mDroppedCount;
+    private int mWakeupCount;
+
+    private static final class QueuedItem {
+        final String path;
+        /* Null for a delete */
+        final PutDataRequest request;
+        final SendCallback callback;
+        final long queuedAt;
+
+        QueuedItem(String path, PutDataRequest request, SendCallback callback, long queuedAt) {
+            this.path = path;
+            this.request = request;
+            this.callback = callback;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    private WearGateway(Context context) {
+        mGoogleApiClient = new GoogleApiClient.Builder(context.getApplicationContext())
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .build();
+    }
+
+    /**
+     * @param context Any context, only its application context is kept
+     * @return The gateway of this process, with a connection started if there wasn't one
+     */
+    public static synchronized WearGateway getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearGateway(context);
+        }
+        sInstance.connectIfNeeded();
+        return sInstance;
+    }
+
+    private synchronized void connectIfNeeded() {
+        if (mGoogleApiClient.isConnected() || mGoogleApiClient.isConnecting()) return;
+        mConnectStartedAt = SystemClock.elapsedRealtime();
+        mGoogleApiClient.connect();
+    }
+
+    /**
+     * Puts a data item, now if connected, otherwise once the connection is made.
+     */
+    @Override
+    public synchronized void putDataItem(String path, byte[] data, boolean urgent,
+                                         SendCallback callback) {
+        PutDataRequest request = PutDataRequest.create(path).setData(data);
+        if (urgent) {
+            request.setUrgent();
+        }
+        enqueue(new QueuedItem(path, request, callback, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Deletes the data items at a path, on every node, now if connected, otherwise once the
+     * connection is made.
+     */
+    @Override
+    public synchronized void deleteDataItems(String path, SendCallback callback) {
+        enqueue(new QueuedItem(path, null, callback, SystemClock.elapsedRealtime()));
+    }
+
+    private void enqueue(QueuedItem item) {
+        if (mGoogleApiClient.isConnected()) {
+            send(item);
+            return;
+        }
+
+        QueuedItem replaced = mQueue.put(item.path, item);
+        if (replaced != null) {
+            mDroppedCount++;
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Dropped an unsent operation on " + item.path
+                        + ", replaced by a newer one");
+            }
+        }
+        connectIfNeeded();
+    }
+
+    private void send(QueuedItem item) {
+        long waitedMillis = SystemClock.elapsedRealtime() - item.queuedAt;
+        if (waitedMillis > LATE_SEND_MILLIS) {
+            mLateCount++;
+            Log.w(TAG, "Sending " + item.path + " " + waitedMillis + "ms late");
+        }
+
+        final QueuedItem sent = item;
+        if (item.request != null) {
+            Wearable.DataApi.putDataItem(mGoogleApiClient, item.request)
+                    .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
+                        @Override
+                        public void onResult(@NonNull DataApi.DataItemResult result) {
+                            onSendResult(sent, result.getStatus().isSuccess());
+                        }
+                    });
+        } else {
+            Uri uri = new Uri.Builder().scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(item.path).build();
+            Wearable.DataApi.deleteDataItems(mGoogleApiClient, uri)
+                    .setResultCallback(new ResultCallback<DataApi.DeleteDataItemsResult>() {
+                        @Override
+                        public void onResult(@NonNull DataApi.DeleteDataItemsResult result) {
+                            onSendResult(sent, result.getStatus().isSuccess());
+                        }
+                    });
+        }
+    }
+
+    private void onSendResult(QueuedItem item, boolean success) {
+        synchronized (this) {
+            if (success) {
+                mSentCount++;
+                if (item.request != null && item.request.isUrgent()) {
+                    mWakeupCount++;
+                }
+            } else {
+                mDroppedCount++;
+                Log.w(TAG, "Sending " + item.path + " failed");
+            }
+            logCounts();
+        }
+        if (item.callback != null) {
+            item.callback.onSendResult(item.path, success);
+        }
+    }
+
+    private void logCounts() {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Sent: " + mSentCount + ", late: " + mLateCount + ", dropped: "
+                    + mDroppedCount + ", watch wakeups: " + mWakeupCount);
+        }
+    }
+
+    @Override
+    public synchronized void onConnected(@Nullable Bundle bundle) {
+        if (mConnectStartedAt != -1) {
+            long connectMillis = SystemClock.elapsedRealtime() - mConnectStartedAt;
+            Log.i(TAG, "Connected in " + connectMillis + "ms");
+            mConnectStartedAt = -1;
+        }
+
+        for (QueuedItem item : mQueue.values()) {
+            send(item);
+        }
+        mQueue.clear();
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        /* GoogleApiClient reconnects on its own; items put meanwhile are queued */
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onConnectionSuspended: " + cause);
+        }
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        Log.w(TAG, "onConnectionFailed: " + connectionResult);
+
+        /* Nothing will send these. The next put tries to connect again */
+        ArrayList<QueuedItem> dropped;
+        synchronized (this) {
+            mConnectStartedAt = -1;
+            if (mQueue.isEmpty()) return;
+            dropped = new ArrayList<>(mQueue.values());
+            mDroppedCount += dropped.size();
+            mQueue.clear();
+            logCounts();
+        }
+
+        for (QueuedItem item : dropped) {
+            if (item.callback != null) {
+                item.callback.onSendResult(item.path, false);
+            }
+        }
+    }
+}
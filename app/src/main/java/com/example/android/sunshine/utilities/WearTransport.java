@@ -0,0 +1,38 @@
+package com.example.android.sunshine.utilities;
+
+/**
+ * Carries data items from the phone to the watch. {@link WearGateway} does it over the Wearable
+ * data layer; the unit tests' LoopbackWearTransport does it in process, so the wear bridge can
+ * be tested and measured without a watch, or Android at all.
+ * <p>
+ * Like the data layer, a transport keeps one item per path: a put replaces the item, and an
+ * operation on a path supersedes every earlier one on that path.
+ */
+public interface WearTransport {
+
+    /**
+     * Told whether an operation on a data item was accepted, never with the transport locked.
+     */
+    interface SendCallback {
+        void onSendResult(String path, boolean success);
+    }
+
+    /**
+     * Puts a data item.
+     *
+     * @param path     The path of the item
+     * @param data     The payload of the item
+     * @param urgent   true to deliver it right away, waking the watch, false to let the
+     *                 transport batch it
+     * @param callback Told whether the put succeeded, may be null
+     */
+    void putDataItem(String path, byte[] data, boolean urgent, SendCallback callback);
+
+    /**
+     * Deletes the data items at a path.
+     *
+     * @param path     The path of the items to delete
+     * @param callback Told whether the delete succeeded, may be null
+     */
+    void deleteDataItems(String path, SendCallback callback);
+}
@@ -0,0 +1,85 @@
+package com.example.android.sunshine.utilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a day of weather for the watch face in a few bytes. The watch keeps its own copy of
+ * the weather icons, so it only needs the condition and the temperatures, rather than a bitmap
+ * and formatted Strings. The temperatures are rounded here, exactly as the phone displays them,
+ * so the watch shows the same numbers. Each day of the forecast is its own data item, at
+ * {@link SunshineWearUtils#FORECAST_PATH_PREFIX} followed by the day's date in UTC milliseconds,
+ * so each day carries its own version byte.
+ * <p>
+ * Version 2 is 8 bytes, big-endian:
+ * <pre>
+ *   byte    version, currently 2
+ *   byte    flags, FLAG_METRIC if the user displays temperatures in Celsius
+ *   short   Open Weather Map condition id
+ *   short   high temperature, in whole degrees of the user's unit
+ *   short   low temperature, in whole degrees of the user's unit
+ * </pre>
+ * Version 1 sent tenths of a degree Celsius, which the watch rounded again and so sometimes
+ * showed one degree off the phone. The watch face decodes this in its WeatherPayload class;
+ * both must change together.
+ */
+public final class WearWeatherPayload {
+
+    public static final byte VERSION = 2;
+
+    public static final int FLAG_METRIC = 1;
+
+    public static final int SIZE = 8;
+
+    private WearWeatherPayload() {
+    }
+
+    /**
+     * @param conditionId Open Weather Map condition id
+     * @param highCelsius High temperature, in degrees Celsius
+     * @param lowCelsius  Low temperature, in degrees Celsius
+     * @param isMetric    true if the user displays temperatures in Celsius
+     * @return The encoded payload
+     */
+    public static byte[] encode(int conditionId, double highCelsius, double lowCelsius,
+                                boolean isMetric) {
+        return ByteBuffer.allocate(SIZE)
+                .put(VERSION)
+                .put((byte) (isMetric ? FLAG_METRIC : 0))
+                .putShort((short) conditionId)
+                .putShort((short) TemperatureFormatCache.toDisplayedDegrees(highCelsius, isMetric))
+                .putShort((short) TemperatureFormatCache.toDisplayedDegrees(lowCelsius, isMetric))
+                .array();
+    }
+
+    /**
+     * @param payload A payload returned by {@link #encode}
+     * @return Its flags
+     */
+    public static int getFlags(byte[] payload) {
+        return payload[1];
+    }
+
+    /**
+     * @param payload A payload returned by {@link #encode}
+     * @return Its Open Weather Map condition id
+     */
+    public static int getConditionId(byte[] payload) {
+        return ByteBuffer.wrap(payload).getShort(2);
+    }
+
+    /**
+     * @param payload A payload returned by {@link #encode}
+     * @return Its high temperature, in whole degrees of the user's unit
+     */
+    public static int getHighDegrees(byte[] payload) {
+        return ByteBuffer.wrap(payload).getShort(4);
+    }
+
+    /**
+     * @param payload A payload returned by {@link #encode}
+     * @return Its low temperature, in whole degrees of the user's unit
+     */
+    public static int getLowDegrees(byte[] payload) {
+        return ByteBuffer.wrap(payload).getShort(6);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.example.android.sunshine.ForecastDiff.PAYLOAD_DATE;
+import static com.example.android.sunshine.ForecastDiff.PAYLOAD_DESCRIPTION;
+import static com.example.android.sunshine.ForecastDiff.PAYLOAD_ICON;
+import static com.example.android.sunshine.ForecastDiff.PAYLOAD_TEMPERATURES;
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Checks the events {@link ForecastDiff} computes between two lists of rows, in the local JVM.
+ * Each event is recorded as a line, such as "insert 6 1" for one row inserted at position 6.
+ */
+public class TestForecastDiff {
+
+    private static final int DAYS = 7;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    /* January 18th, 2017, normalized */
+    private static final long TODAY = 1484697600000L;
+
+    private static final int ICON_CLEAR = 1;
+    private static final int ICON_RAIN = 2;
+    private static final int ICON_TODAY = 3;
+
+    /* Records the events of a diff as lines */
+    private static class Recorder implements ForecastDiff.Callback {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("insert " + position + " " + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("remove " + position + " " + count);
+        }
+
+        @Override
+        public void onChanged(int position, int count, int payload) {
+            events.add("change " + position + " " + count + " " + payload);
+        }
+    }
+
+    private static ForecastRow row(long date, int iconResId, String dateString,
+                                   String description, String high, String low) {
+        return new ForecastRow(date, iconResId, dateString, description, description,
+                high, high, low, low);
+    }
+
+    /* A clear day, 20° and 10°, as a row after the first one shows it */
+    private static ForecastRow clearDay(long date) {
+        return row(date, ICON_CLEAR, "Day " + date, "Clear", "20°", "10°");
+    }
+
+    /* DAYS clear days from the first day, the first one shown with the "today" layout */
+    private static ForecastRow[] week(long firstDay) {
+        ForecastRow[] rows = new ForecastRow[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            rows[day] = clearDay(firstDay + day * DAY);
+        }
+        rows[0] = row(firstDay, ICON_TODAY, "Today", "Clear", "20°", "10°");
+        return rows;
+    }
+
+    private static List<String> diff(ForecastRow[] oldRows, ForecastRow[] newRows) {
+        Recorder recorder = new Recorder();
+        ForecastDiff.calculate(oldRows, newRows).dispatchTo(recorder);
+        return recorder.events;
+    }
+
+    private static void assertEvents(String message, List<String> actual, String... expected) {
+        assertEquals(message, Arrays.asList(expected), actual);
+    }
+
+    @Test
+    public void testSameRowsHaveNoEvents() {
+        assertEvents("Unchanged rows shouldn't be updated", diff(week(TODAY), week(TODAY)));
+    }
+
+    @Test
+    public void testFirstAndLastForecast() {
+        assertEvents("Every row of the first forecast should be inserted",
+                diff(new ForecastRow[0], week(TODAY)), "insert 0 7");
+        assertEvents("Every row should be removed when there is no forecast",
+                diff(week(TODAY), new ForecastRow[0]), "remove 0 7");
+    }
+
+    @Test
+    public void testInsertedAndRemovedDays() {
+        ForecastRow[] week = week(TODAY);
+        ForecastRow[] gaps = {week[0], week[1], week[4], week[5]};
+
+        assertEvents("Missing days should be inserted in place",
+                diff(gaps, week), "insert 2 2", "insert 6 1");
+        assertEvents("Days no longer there should be removed in place",
+                diff(week, gaps), "remove 2 2", "remove 4 1");
+    }
+
+    @Test
+    public void testChangedFieldsAreFlagged() {
+        ForecastRow[] oldRows = week(TODAY);
+        ForecastRow[] newRows = week(TODAY);
+        long date = TODAY + 2 * DAY;
+        newRows[2] = row(date, ICON_RAIN, "Day " + date, "Rain", "20°", "10°");
+        date = TODAY + 4 * DAY;
+        newRows[4] = row(date, ICON_CLEAR, "Day " + date, "Clear", "21°", "10°");
+        date = TODAY + 5 * DAY;
+        newRows[5] = row(date, ICON_CLEAR, "Day " + date, "Clear", "20°", "9°");
+
+        assertEvents("Only the changed views should be rebound", diff(oldRows, newRows),
+                "change 2 1 " + (PAYLOAD_ICON | PAYLOAD_DESCRIPTION),
+                "change 4 2 " + PAYLOAD_TEMPERATURES);
+    }
+
+    @Test
+    public void testChangesWithDifferentPayloadsAreKeptApart() {
+        ForecastRow[] oldRows = week(TODAY);
+        ForecastRow[] newRows = week(TODAY);
+        long date = TODAY + DAY;
+        newRows[1] = row(date, ICON_CLEAR, "Day " + date, "Clear", "25°", "10°");
+        date = TODAY + 2 * DAY;
+        newRows[2] = row(date, ICON_CLEAR, "Day " + date, "Fair", "20°", "10°");
+
+        assertEvents("Adjacent changes of different fields are separate events",
+                diff(oldRows, newRows),
+                "change 1 1 " + PAYLOAD_TEMPERATURES,
+                "change 2 1 " + PAYLOAD_DESCRIPTION);
+    }
+
+    @Test
+    public void testDayRollover() {
+        /*
+         * The next day, yesterday leaves the head of the list, a new day joins its tail, and
+         * the new first day takes the "today" layout.
+         */
+        assertEvents("Unexpected events when the day rolls over",
+                diff(week(TODAY), week(TODAY + DAY)),
+                "remove 0 1",
+                "change 0 1 " + (PAYLOAD_ICON | PAYLOAD_DATE),
+                "insert 6 1");
+    }
+
+    @Test
+    public void testRolloverWithAShorterForecast() {
+        /* A sync that returns fewer days the next morning */
+        ForecastRow[] shorter = Arrays.copyOf(week(TODAY + DAY), 3);
+
+        assertEvents("Unexpected events for a shorter forecast the next day",
+                diff(week(TODAY), shorter),
+                "remove 0 1",
+                "change 0 1 " + (PAYLOAD_ICON | PAYLOAD_DATE),
+                "remove 3 3");
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.android.sunshine.utilities;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WearTransport} that delivers data items to a {@link Receiver} in this process, standing
+ * in for the data layer and the watch, in the local JVM tests of the wear bridge.
+ * <p>
+ * Each operation is delivered after a random latency, which reorders operations sent close
+ * together, and a share of them are dropped, failing their callback. Non-urgent puts wait an
+ * extra batch delay, as the data layer batches them. All randomness comes from the seed, so a
+ * run can be repeated. Like the data layer, an operation that arrives after a newer one on the
+ * same path is discarded rather than delivered.
+ */
+public final class LoopbackWearTransport implements WearTransport {
+
+    /**
+     * The watch end of the loopback, called on the transport's delivery thread.
+     */
+    public interface Receiver {
+        void onDataItemChanged(String path, byte[] data);
+
+        void onDataItemDeleted(String path);
+    }
+
+    /**
+     * Counts of a transport since it was created.
+     */
+    public static final class Stats {
+        public int sent;
+        public int delivered;
+        public int dropped;
+        /* Arrived after a newer operation on the same path */
+        public int stale;
+        /* Urgent puts delivered */
+        public int wakeups;
+        public long payloadBytes;
+        public long totalLatencyNanos;
+        public long maxLatencyNanos;
+
+        Stats copy() {
+            Stats copy = new Stats();
+            copy.sent = sent;
+            copy.delivered = delivered;
+            copy.dropped = dropped;
+            copy.stale = stale;
+            copy.wakeups = wakeups;
+            copy.payloadBytes = payloadBytes;
+            copy.totalLatencyNanos = totalLatencyNanos;
+            copy.maxLatencyNanos = maxLatencyNanos;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            long meanMicros = delivered == 0 ? 0 : totalLatencyNanos / delivered / 1000;
+            return "sent: " + sent + ", delivered: " + delivered + ", dropped: " + dropped
+                    + ", stale: " + stale + ", wakeups: " + wakeups
+                    + ", payload bytes: " + payloadBytes + ", mean latency: " + meanMicros
+                    + "us, max latency: " + (maxLatencyNanos / 1000) + "us";
+        }
+    }
+
+    private final Receiver mReceiver;
+    private final long mMaxLatencyMicros;
+    private final long mBatchDelayMicros;
+    private final double mDropRate;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    /* Guarded by this */
+    private final Random mRandom;
+    private final HashMap<String, Long> mLatestSequence = new HashMap<>();
+    private long mNextSequence;
+    private final Stats mStats = new Stats();
+
+    /**
+     * @param receiver         Receives the items that get through
+     * @param seed             Seeds the latencies and drops
+     * @param maxLatencyMicros Each operation is delivered after up to this long
+     * @param batchDelayMicros Non-urgent puts are delayed by this much more
+     * @param dropRate         Share of operations dropped, from 0 to 1
+     */
+    public LoopbackWearTransport(Receiver receiver, long seed, long maxLatencyMicros,
+                                 long batchDelayMicros, double dropRate) {
+        mReceiver = receiver;
+        mRandom = new Random(seed);
+        mMaxLatencyMicros = maxLatencyMicros;
+        mBatchDelayMicros = batchDelayMicros;
+        mDropRate = dropRate;
+    }
+
+    @Override
+    public void putDataItem(String path, byte[] data, boolean urgent, SendCallback callback) {
+        schedule(path, data.clone(), urgent, callback);
+    }
+
+    @Override
+    public void deleteDataItems(String path, SendCallback callback) {
+        schedule(path, null, true, callback);
+    }
+
+    private synchronized void schedule(final String path, final byte[] data, final boolean urgent,
+                                       final SendCallback callback) {
+        final long sequence = mNextSequence++;
+        final long sentAt = System.nanoTime();
+        final boolean drop = mRandom.nextDouble() < mDropRate;
+        long delayMicros = mMaxLatencyMicros == 0
+                ? 0 : (long) (mRandom.nextDouble() * mMaxLatencyMicros);
+        if (!urgent) {
+            delayMicros += mBatchDelayMicros;
+        }
+
+        mStats.sent++;
+        if (data != null) {
+            mStats.payloadBytes += data.length;
+        }
+
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                deliver(path, data, urgent, callback, sequence, sentAt, drop);
+            }
+        }, delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private void deliver(String path, byte[] data, boolean urgent, SendCallback callback,
+                         long sequence, long sentAt, boolean drop) {
+        boolean apply;
+        synchronized (this) {
+            Long latest = mLatestSequence.get(path);
+            if (drop) {
+                mStats.dropped++;
+                apply = false;
+            } else if (latest != null && latest > sequence) {
+                mStats.stale++;
+                apply = false;
+            } else {
+                mLatestSequence.put(path, sequence);
+                long latency = System.nanoTime() - sentAt;
+                mStats.delivered++;
+                mStats.totalLatencyNanos += latency;
+                mStats.maxLatencyNanos = Math.max(mStats.maxLatencyNanos, latency);
+                if (data != null && urgent) {
+                    mStats.wakeups++;
+                }
+                apply = true;
+            }
+        }
+
+        if (apply) {
+            if (data != null) {
+                mReceiver.onDataItemChanged(path, data);
+            } else {
+                mReceiver.onDataItemDeleted(path);
+            }
+        }
+        if (callback != null) {
+            /* A stale operation was accepted; a newer one simply overrode it */
+            callback.onSendResult(path, !drop);
+        }
+    }
+
+    /**
+     * @return A copy of the counts so far
+     */
+    public synchronized Stats getStats() {
+        return mStats.copy();
+    }
+
+    /**
+     * Waits for every operation already sent to be delivered, or dropped, and its callback to
+     * be called. The transport can still be used afterwards.
+     *
+     * @param timeoutMillis How long to wait for the deliveries
+     */
+    public void flush(long timeoutMillis) throws Exception {
+        /* Due after every operation already scheduled, and so run after them */
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, mMaxLatencyMicros + mBatchDelayMicros + 1, TimeUnit.MICROSECONDS)
+                .get(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Delivers every operation already sent, then stops the delivery thread.
+     *
+     * @param timeoutMillis How long to wait for the deliveries
+     * @return true if they were all delivered in time
+     */
+    public boolean shutdown(long timeoutMillis) throws InterruptedException {
+        mExecutor.shutdown();
+        return mExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link LoopbackWearTransport} behaves like the data layer the wear bridge is tested
+ * against: payloads encoded by {@link WearWeatherPayload}, reordered and dropped on the way.
+ * The bridge itself is tested in {@link TestWearForecastPublisher}.
+ */
+public class TestLoopbackWearTransport {
+
+    private static final long SEED = 42;
+    private static final long TIMEOUT = 5000;
+    private static final int DAYS = 14;
+    private static final String PATH_PREFIX = "/forecast/";
+
+    /* The watch end: the latest item per path */
+    private final ConcurrentHashMap<String, byte[]> mWatch = new ConcurrentHashMap<>();
+
+    private final LoopbackWearTransport.Receiver mReceiver = new LoopbackWearTransport.Receiver() {
+        @Override
+        public void onDataItemChanged(String path, byte[] data) {
+            mWatch.put(path, data);
+        }
+
+        @Override
+        public void onDataItemDeleted(String path) {
+            mWatch.remove(path);
+        }
+    };
+
+    private static byte[] dayPayload(int sync, int day) {
+        return WearWeatherPayload.encode(800 + (sync + day) % 5, 20 + sync * 0.1, 10 - day, true);
+    }
+
+    @Test
+    public void testReorderedPutsLeaveTheLatestItem() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 2000, 0, 0);
+
+        int syncs = 50;
+        for (int sync = 0; sync < syncs; sync++) {
+            for (int day = 0; day < DAYS; day++) {
+                transport.putDataItem(PATH_PREFIX + day, dayPayload(sync, day), true, null);
+            }
+        }
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+
+        for (int day = 0; day < DAYS; day++) {
+            assertTrue("Day " + day + " isn't the last one put",
+                    Arrays.equals(dayPayload(syncs - 1, day), mWatch.get(PATH_PREFIX + day)));
+        }
+
+        LoopbackWearTransport.Stats stats = transport.getStats();
+        assertEquals("Every put is either delivered or stale",
+                stats.sent, stats.delivered + stats.stale);
+    }
+
+    @Test
+    public void testDroppedOperationsFailTheirCallback() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0.3);
+
+        final AtomicInteger failed = new AtomicInteger();
+        WearTransport.SendCallback callback = new WearTransport.SendCallback() {
+            @Override
+            public void onSendResult(String path, boolean success) {
+                if (!success) failed.incrementAndGet();
+            }
+        };
+
+        for (int day = 0; day < DAYS; day++) {
+            transport.putDataItem(PATH_PREFIX + day, dayPayload(0, day), false, callback);
+            transport.deleteDataItems(PATH_PREFIX + day, callback);
+        }
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+
+        LoopbackWearTransport.Stats stats = transport.getStats();
+        assertTrue("Nothing was dropped", stats.dropped > 0);
+        assertEquals("Dropped operations should fail", stats.dropped, failed.get());
+        assertEquals("Non-urgent puts shouldn't wake the watch", 0, stats.wakeups);
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.utilities;
+
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.data.ForecastSnapshot;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Runs the phone end of the wear bridge, {@link WearForecastPublisher}, through
+ * {@link LoopbackWearTransport} in the local JVM, with the acknowledged payloads kept in memory
+ * rather than in preferences.
+ */
+public class TestWearForecastPublisher {
+
+    private static final long SEED = 42;
+    private static final long TIMEOUT = 5000;
+    private static final int DAYS = 14;
+    private static final long DAY = SunshineDateUtils.DAY_IN_MILLIS;
+    /* January 18th, 2017, normalized */
+    private static final long TODAY = 1484697600000L;
+
+    /* The values of res/values/integers.xml */
+    private static final int URGENT_DAYS = 1;
+    private static final int URGENT_DELTA_CELSIUS = 3;
+
+    /* The watch end: the latest item per path */
+    private final ConcurrentHashMap<String, byte[]> mWatch = new ConcurrentHashMap<>();
+
+    private final LoopbackWearTransport.Receiver mReceiver = new LoopbackWearTransport.Receiver() {
+        @Override
+        public void onDataItemChanged(String path, byte[] data) {
+            mWatch.put(path, data);
+        }
+
+        @Override
+        public void onDataItemDeleted(String path) {
+            mWatch.remove(path);
+        }
+    };
+
+    /* Outlives the publishers, like the preferences outlive a process */
+    private final MemoryStore mStore = new MemoryStore();
+
+    private static class MemoryStore implements WearForecastPublisher.Store {
+        private final LongSparseArray<byte[]> mDays = new LongSparseArray<>();
+
+        @Override
+        public synchronized LongSparseArray<byte[]> load() {
+            return mDays.clone();
+        }
+
+        @Override
+        public synchronized void put(long date, byte[] payload) {
+            mDays.put(date, payload);
+        }
+
+        @Override
+        public synchronized void remove(long date) {
+            mDays.remove(date);
+        }
+
+        synchronized int size() {
+            return mDays.size();
+        }
+
+        synchronized byte[] get(long date) {
+            return mDays.get(date);
+        }
+    }
+
+    /*
+     * A forecast being edited by a test: DAYS days from firstDay, clear, with highs of 20°C and
+     * lows of 10°C until changed.
+     */
+    private static class Days {
+        final long firstDay;
+        final int[] weatherIds = new int[DAYS];
+        final double[] highs = new double[DAYS];
+        final double[] lows = new double[DAYS];
+
+        Days(long firstDay) {
+            this.firstDay = firstDay;
+            Arrays.fill(weatherIds, 800);
+            Arrays.fill(highs, 20);
+            Arrays.fill(lows, 10);
+        }
+
+        long getDate(int day) {
+            return firstDay + day * DAY;
+        }
+
+        ForecastSnapshot snapshot() {
+            long[] dates = new long[DAYS];
+            for (int day = 0; day < DAYS; day++) {
+                dates[day] = getDate(day);
+            }
+            double[] unused = new double[DAYS];
+            return new ForecastSnapshot(dates, weatherIds.clone(), highs.clone(), lows.clone(),
+                    unused, unused, unused, unused);
+        }
+
+        byte[] payload(int day, boolean isMetric) {
+            return WearWeatherPayload.encode(weatherIds[day], highs[day], lows[day], isMetric);
+        }
+    }
+
+    private WearForecastPublisher newPublisher(WearTransport transport) {
+        return new WearForecastPublisher(transport, mStore, URGENT_DAYS, URGENT_DELTA_CELSIUS);
+    }
+
+    private static String path(long date) {
+        return SunshineWearUtils.FORECAST_PATH_PREFIX + date;
+    }
+
+    private void assertWatchShows(Days days, boolean isMetric) {
+        assertEquals("Unexpected number of days on the watch", DAYS, mWatch.size());
+        for (int day = 0; day < DAYS; day++) {
+            byte[] shown = mWatch.get(path(days.getDate(day)));
+            assertTrue("Day " + day + " isn't the last one published",
+                    Arrays.equals(days.payload(day, isMetric), shown));
+        }
+    }
+
+    /*
+     * The watch face's WeatherPayload decodes these same bytes in its own test, so the two ends
+     * can't drift apart unnoticed.
+     */
+    @Test
+    public void testPayloadMatchesTheWatchFormat() {
+        assertTrue("Unexpected Celsius payload", Arrays.equals(
+                new byte[]{2, 1, 0x03, 0x20, 0, 21, 0, 12},
+                WearWeatherPayload.encode(800, 21.45, 12, true)));
+        assertTrue("Unexpected Fahrenheit payload", Arrays.equals(
+                new byte[]{2, 0, 0x03, 0x20, 0, 71, 0, 54},
+                WearWeatherPayload.encode(800, 21.45, 12, false)));
+        /* Rounded half away from zero, like the phone's "%1.0f" */
+        assertTrue("Unexpected negative payload", Arrays.equals(
+                new byte[]{2, 1, 0x02, 0x58, -1, -3, -1, -6},
+                WearWeatherPayload.encode(600, -2.5, -5.5, true)));
+    }
+
+    @Test
+    public void testUnchangedForecastIsNotPutAgain() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0);
+        Days days = new Days(TODAY);
+
+        WearForecastPublisher.Result first =
+                newPublisher(transport).publish(days.snapshot(), true, TODAY);
+        assertEquals("Every day should be put", DAYS, first.put);
+        assertEquals("Only the days the watch shows soon should be urgent",
+                URGENT_DAYS, first.urgent);
+        transport.flush(TIMEOUT);
+        assertEquals("Every acknowledged day should be stored", DAYS, mStore.size());
+
+        /* A new process, which only has the store */
+        WearForecastPublisher.Result second =
+                newPublisher(transport).publish(days.snapshot(), true, TODAY);
+        assertEquals("An unchanged forecast shouldn't be put", 0, second.put);
+        assertEquals("An unchanged forecast shouldn't be deleted", 0, second.deleted);
+        assertTrue("Shutting down timed out", transport.shutdown(TIMEOUT));
+
+        assertEquals("Unexpected operations sent", DAYS, transport.getStats().sent);
+        assertWatchShows(days, true);
+    }
+
+    @Test
+    public void testOnlySignificantChangesAreUrgent() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0);
+        WearForecastPublisher publisher = newPublisher(transport);
+        Days days = new Days(TODAY);
+        publisher.publish(days.snapshot(), true, TODAY);
+
+        days.highs[0] = 22;
+        assertPut(publisher, days, true, 1, 0, "A small change of today's high");
+        days.highs[0] = 25;
+        assertPut(publisher, days, true, 1, 1, "A large change of today's high");
+        days.lows[0] = 10.4;
+        assertPut(publisher, days, true, 0, 0, "A change the watch can't show");
+        days.weatherIds[0] = 802;
+        assertPut(publisher, days, true, 1, 1, "A new icon for today");
+        days.weatherIds[0] = 804;
+        assertPut(publisher, days, true, 1, 0, "A new condition with the same icon");
+        days.weatherIds[1] = 500;
+        days.highs[1] = 30;
+        assertPut(publisher, days, true, 1, 0, "A large change of tomorrow");
+
+        assertPut(publisher, days, false, DAYS, URGENT_DAYS, "A change of unit");
+        /* 3°C is 5.4°F: 25°C is 77°F, 27.8°C 82°F and 28.4°C 83°F */
+        days.highs[0] = 27.8;
+        assertPut(publisher, days, false, 1, 0, "A change of 5°F");
+        days.highs[0] = 25;
+        assertPut(publisher, days, false, 1, 0, "A change of 5°F back");
+        days.highs[0] = 28.4;
+        assertPut(publisher, days, false, 1, 1, "A change of 6°F");
+
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+        assertWatchShows(days, false);
+    }
+
+    private static void assertPut(WearForecastPublisher publisher, Days days, boolean isMetric,
+                                  int put, int urgent, String change) {
+        WearForecastPublisher.Result result = publisher.publish(days.snapshot(), isMetric, TODAY);
+        assertEquals(change + ": unexpected days put", put, result.put);
+        assertEquals(change + ": unexpected urgent puts", urgent, result.urgent);
+        assertEquals(change + ": unexpected days deleted", 0, result.deleted);
+    }
+
+    @Test
+    public void testPastDaysAreDeleted() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0);
+        WearForecastPublisher publisher = newPublisher(transport);
+        publisher.publish(new Days(TODAY).snapshot(), true, TODAY);
+
+        long tomorrow = TODAY + DAY;
+        Days days = new Days(tomorrow);
+        WearForecastPublisher.Result result = publisher.publish(days.snapshot(), true, tomorrow);
+        assertEquals("Only the new last day should be put", 1, result.put);
+        assertEquals("The new last day is too far off to be urgent", 0, result.urgent);
+        assertEquals("Yesterday should be deleted", 1, result.deleted);
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+
+        assertWatchShows(days, true);
+        assertEquals("Unexpected days stored", DAYS, mStore.size());
+        assertNull("Yesterday is still stored", mStore.get(TODAY));
+    }
+
+    @Test
+    public void testPastDaysAreTrimmedOnLoad() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0);
+        Days days = new Days(TODAY);
+        newPublisher(transport).publish(days.snapshot(), true, TODAY);
+        transport.flush(TIMEOUT);
+
+        /* A new process, started the next day */
+        long tomorrow = TODAY + DAY;
+        WearForecastPublisher.Result result =
+                newPublisher(transport).publish(new Days(tomorrow).snapshot(), true, tomorrow);
+        assertEquals("Yesterday should be deleted", 1, result.deleted);
+        assertNull("Yesterday should be trimmed from the store on load", mStore.get(TODAY));
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+
+        assertNull("Yesterday is still on the watch", mWatch.get(path(TODAY)));
+        assertEquals("Unexpected days stored", DAYS, mStore.size());
+    }
+
+    @Test
+    public void testDroppedPutsAreRetried() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 0, 0, 0.3);
+        WearForecastPublisher publisher = newPublisher(transport);
+        Days days = new Days(TODAY);
+
+        int puts = 0;
+        int syncs = 0;
+        WearForecastPublisher.Result result;
+        do {
+            assertTrue("The forecast never got through", syncs++ < 50);
+            result = publisher.publish(days.snapshot(), true, TODAY);
+            puts += result.put;
+            transport.flush(TIMEOUT);
+        } while (result.put > 0);
+        assertTrue("Shutting down timed out", transport.shutdown(TIMEOUT));
+
+        LoopbackWearTransport.Stats stats = transport.getStats();
+        assertTrue("Nothing was dropped", stats.dropped > 0);
+        assertEquals("Each dropped put should be put exactly once more",
+                DAYS + stats.dropped, puts);
+        assertEquals("Every day should be stored once acknowledged", DAYS, mStore.size());
+        assertWatchShows(days, true);
+    }
+
+    /*
+     * A thousand syncs of a forecast that changes a little each time and moves on a day every
+     * hundred syncs, delivered out of order by the loopback.
+     */
+    @Test
+    public void testBridgeThroughput() throws Exception {
+        LoopbackWearTransport transport =
+                new LoopbackWearTransport(mReceiver, SEED, 500, 0, 0);
+        WearForecastPublisher publisher = newPublisher(transport);
+
+        /* What each day should have been sent, worked out independently of the publisher */
+        HashMap<Long, byte[]> expected = new HashMap<>();
+        int expectedPuts = 0;
+        int expectedDeletes = 0;
+        int puts = 0;
+        int urgent = 0;
+        int deletes = 0;
+
+        int syncs = 1000;
+        Days days = null;
+        for (int sync = 0; sync < syncs; sync++) {
+            long today = TODAY + (sync / 100) * DAY;
+            days = new Days(today);
+            for (int day = 0; day < DAYS; day++) {
+                days.weatherIds[day] = 800 + (sync / 10 + day) % 5;
+                days.highs[day] = 20 + sync * 0.05;
+                days.lows[day] = 10 - day;
+
+                byte[] payload = days.payload(day, true);
+                if (!Arrays.equals(payload, expected.put(days.getDate(day), payload))) {
+                    expectedPuts++;
+                }
+            }
+            if (expected.remove(today - DAY) != null) {
+                expectedDeletes++;
+            }
+
+            WearForecastPublisher.Result result = publisher.publish(days.snapshot(), true, today);
+            puts += result.put;
+            urgent += result.urgent;
+            deletes += result.deleted;
+        }
+        assertTrue("Deliveries timed out", transport.shutdown(TIMEOUT));
+
+        assertEquals("Only changed days should be put", expectedPuts, puts);
+        assertEquals("Days should be deleted as they pass", expectedDeletes, deletes);
+        assertTrue("Not every put should be urgent", urgent < puts);
+
+        LoopbackWearTransport.Stats stats = transport.getStats();
+        assertEquals("Every put and delete should be sent", puts + deletes, stats.sent);
+        assertEquals("Every operation is either delivered or stale",
+                stats.sent, stats.delivered + stats.stale);
+        assertEquals("Unexpected payload size",
+                (long) puts * WearWeatherPayload.SIZE, stats.payloadBytes);
+        assertTrue("Only urgent puts should wake the watch", stats.wakeups <= urgent);
+        assertWatchShows(days, true);
+        assertFalse("A past day is still on the watch", mWatch.containsKey(path(TODAY)));
+    }
+}
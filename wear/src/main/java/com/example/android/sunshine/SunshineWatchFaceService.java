@@ -22,13 +22,12 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
-import android.os.AsyncTask;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -39,23 +38,23 @@ import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
-import android.widget.Toast;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.Asset;
+import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -74,6 +73,19 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Width and height of the weather icon, in pixels.
+     */
+    private static final int WEATHER_ICON_SIZE = 70;
+
+    /**
+     * The phone publishes each day of the forecast as its own data item, at this prefix followed
+     * by the day's date in UTC milliseconds. Must match SunshineWearUtils in the phone app.
+     */
+    private static final String FORECAST_PATH_PREFIX = "/forecast/";
+
+    private static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
@@ -117,9 +129,46 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         boolean mAmbient;
 
         Calendar mCalendar;
+
+        /* Every day the phone published, by UTC date */
+        final TreeMap<Long, WeatherPayload> mForecast = new TreeMap<>();
+        /* Days after today to show the weather of, changed by tapping */
+        int mShownDayOffset;
+        final SimpleDateFormat mForecastDateFormat = new SimpleDateFormat("EEE, MMM dd yyyy");
+        final SimpleDateFormat mTodayDateFormat = new SimpleDateFormat("EEE, MMM dd yyyy");
         String tempHigh = "40 ";
         String tempLow = "38";
-        Bitmap mWeatherIcon = Bitmap.createScaledBitmap(BitmapFactory.decodeResource(getResources(), R.drawable.ic_clear), 70, 70, true);
+
+        /*
+         * What onDraw draws, formatted and measured ahead of it so a frame allocates nothing.
+         * The time is formatted into a char buffer once a minute, the date once a day, and the
+         * widths are measured whenever the text or the text size changes. A key of -1 forces
+         * the text to be formatted and measured again.
+         */
+        final char[] mTimeChars = new char[5];
+        int mTimeLength;
+        int mTimeKey = -1;
+        float mTimeWidth;
+        String mDateText;
+        long mDateKey = -1;
+        int mDateOffset;
+        float mDateWidth;
+        float mTempHighWidth;
+        float mTempLowWidth;
+
+        /*
+         * Everything but the time, drawn once into an off-screen bitmap which every interactive
+         * frame blits before drawing the time over it. It is drawn again only when the weather,
+         * the date, the ambient mode, the insets or the surface change, or the width of the
+         * time, which the separator line follows.
+         */
+        Bitmap mStaticLayer;
+        Canvas mStaticLayerCanvas;
+        boolean mStaticLayerValid;
+        float mStaticLayerTimeWidth;
+
+        final WatchFaceStats mStats = new WatchFaceStats();
+        Bitmap mWeatherIcon = WeatherIconCache.get(getResources(), R.drawable.ic_clear, WEATHER_ICON_SIZE);
         float mLineHeight;
         float mLineHeightNoSpacing;
 
@@ -133,7 +182,9 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             @Override
             public void onReceive(Context context, Intent intent) {
                 mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mTodayDateFormat.setTimeZone(TimeZone.getDefault());
+                invalidateTextCaches();
+                invalidate(WatchFaceStats.CAUSE_TIME_ZONE);
             }
         };
 
@@ -146,6 +197,18 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
          */
         boolean mLowBitAmbient;
 
+        final ResultCallback<DataItemBuffer> mForecastItemsCallback =
+                new ResultCallback<DataItemBuffer>() {
+                    @Override
+                    public void onResult(@NonNull DataItemBuffer dataItems) {
+                        for (DataItem dataItem : dataItems) {
+                            putForecastDay(dataItem.getUri().getPath(), dataItem.getData());
+                        }
+                        dataItems.release();
+                        updateUiWeatherData(WatchFaceStats.CAUSE_DATA);
+                    }
+                };
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
@@ -170,11 +233,17 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             mLineHeightNoSpacing = resources.getDimension(R.dimen.digital_line_height_no_spacing);
 
             mCalendar = Calendar.getInstance();
+            /* Forecast dates are UTC midnights */
+            mForecastDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (mStaticLayer != null) {
+                mStaticLayer.recycle();
+                mStaticLayer = null;
+            }
             super.onDestroy();
         }
 
@@ -206,9 +275,12 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
                 // Update time zone in case it changed while we weren't visible.
                 mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mTodayDateFormat.setTimeZone(TimeZone.getDefault());
+                invalidateTextCaches();
+                invalidate(WatchFaceStats.CAUSE_VISIBILITY);
             } else {
                 unregisterReceiver();
+                mStats.log();
 
                 if (mGoogleApiClient != null && mGoogleApiClient.isConnected()){
                     Wearable.DataApi.removeListener(mGoogleApiClient, this);
@@ -259,6 +331,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
             mDatePaint.setTextSize(dateTextSize);
             mTempHighPaint.setTextSize(weatherTextSize);
             mTempLowPaint.setTextSize(weatherTextSize);
+            invalidateTextCaches();
+            mStaticLayerValid = false;
         }
 
         @Override
@@ -270,7 +344,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            invalidate(WatchFaceStats.CAUSE_TIME_TICK);
+            mStats.logIfDue();
         }
 
         @Override
@@ -281,7 +356,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                 if (mLowBitAmbient) {
                     mTimePaint.setAntiAlias(!inAmbientMode);
                 }
-                invalidate();
+                mStaticLayerValid = false;
+                invalidate(WatchFaceStats.CAUSE_AMBIENT);
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -290,8 +366,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
         }
 
         /**
-         * Captures tap event (and tap type) and toggles the background color if the user finishes
-         * a tap.
+         * Captures tap event (and tap type) and shows the weather of the next day of the forecast
+         * if the user finishes a tap, going back to today after the last one.
          */
         @Override
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
@@ -304,71 +380,151 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
                     break;
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
-                    // TODO: Add code to handle the tap gesture.
-                    Toast.makeText(getApplicationContext(), R.string.message, Toast.LENGTH_SHORT)
-                            .show();
+                    mShownDayOffset++;
+                    updateUiWeatherData(WatchFaceStats.CAUSE_TAP);
                     break;
             }
-            invalidate();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            if (isInAmbientMode()) {
+            long drawStart = System.nanoTime();
+            long now = System.currentTimeMillis();
+            mCalendar.setTimeInMillis(now);
+            updateTimeText();
+
+            // Draw the background, and in interactive mode the date and weather over it.
+            if (mAmbient) {
                 canvas.drawColor(Color.BLACK);
             } else {
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+                if (updateDateText() || mStaticLayerTimeWidth != mTimeWidth) {
+                    mStaticLayerValid = false;
+                }
+                drawStaticLayer(bounds.width(), bounds.height());
+                canvas.drawBitmap(mStaticLayer, 0, 0, null);
+            }
+
+            // draw time
+            float centerX = bounds.width() / 2f;
+            float x = centerX - (mTimeWidth / 2);
+            canvas.drawText(mTimeChars, 0, mTimeLength, x, mYOffset, mTimePaint);
+
+            mStats.drawn(System.nanoTime() - drawStart);
+        }
+
+        /**
+         * Draws the background, date, separator line and weather into {@link #mStaticLayer}, if
+         * it isn't up to date. The bitmap is only allocated again when the surface size changes.
+         */
+        private void drawStaticLayer(int width, int height) {
+            if (mStaticLayer == null || mStaticLayer.getWidth() != width
+                    || mStaticLayer.getHeight() != height) {
+                if (mStaticLayer != null) {
+                    mStaticLayer.recycle();
+                }
+                mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                mStaticLayerCanvas = new Canvas(mStaticLayer);
+                mStaticLayerValid = false;
             }
+            if (mStaticLayerValid) return;
 
-            int width = bounds.width();
+            Canvas canvas = mStaticLayerCanvas;
+            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
 
             float centerX = width / 2f;
-            float x = mXOffset;
+            float x;
             float y = mYOffset;
 
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+            // draw date, or the date of the forecast day shown if it isn't today
+            y+= mLineHeightNoSpacing;
+            x = centerX - (mDateWidth / 2);
+            canvas.drawText(mDateText, x, y, mDatePaint);
+
+            // draw line
+            float lineStartX = centerX - (mTimeWidth / 2) + 40;
+            float lineY = y + (mLineHeight / 2) - 10;
+            float lineEndX = centerX + (mTimeWidth / 2) - 40;
+            canvas.drawLine(lineStartX, lineY, lineEndX, lineY, mDatePaint);
+
+            // draw weather icon followed by temperature
+            if (mWeatherIcon != null){
+                // get total width of icon plus the 2 temperatures
+                float weatherTotalWidth = (float) mWeatherIcon.getWidth() + mTempHighWidth + mTempLowWidth;
+                // measure starting point on X-axis from the center of screen
+                x = centerX - (weatherTotalWidth / 2);
+                // calculate Y-axis position of bitmap icon
+                float bitmapY = y + mLineHeightNoSpacing - 5;
+                // draw icon
+                canvas.drawBitmap(mWeatherIcon, x, bitmapY, null);
+                // move X-axis starting point after the icon
+                x+= (float) mWeatherIcon.getWidth();
+                // calculate Y-axis position for temperature text
+                y+= mLineHeight + (mLineHeightNoSpacing / 2) - 10;
+                // draw temperatures
+                canvas.drawText(tempHigh, x, y, mTempHighPaint);
+                x+= mTempHighWidth;
+                canvas.drawText(tempLow, x, y, mTempLowPaint);
+            }
 
-            // draw time
-            String time = String.format("%d:%02d", mCalendar.get(Calendar.HOUR_OF_DAY), mCalendar.get(Calendar.MINUTE));
-            x = centerX - (mTimePaint.measureText(time) / 2);
-            canvas.drawText(time, x, y, mTimePaint);
-
-            if (!mAmbient){
-                // draw date
-                SimpleDateFormat sdf = new SimpleDateFormat("EEE, MMM dd yyyy");
-                String date = sdf.format(mCalendar.getTime());
-                y+= mLineHeightNoSpacing;
-                x = centerX - (mDatePaint.measureText(date) / 2);
-                canvas.drawText(date.toUpperCase(), x, y, mDatePaint);
-
-                // draw line
-                float lineStartX = centerX - (mTimePaint.measureText(time) / 2) + 40;
-                float lineY = y + (mLineHeight / 2) - 10;
-                float lineEndX = centerX + (mTimePaint.measureText(time) / 2) - 40;
-                canvas.drawLine(lineStartX, lineY, lineEndX, lineY, mDatePaint);
-
-                // draw weather icon followed by temperature
-                if (mWeatherIcon != null){
-                    // get total width of icon plus the 2 temperatures
-                    float weatherTotalWidth = (float) mWeatherIcon.getWidth() + mTempHighPaint.measureText(tempHigh) + mTempLowPaint.measureText(tempLow);
-                    // measure starting point on X-axis from the center of screen
-                    x = centerX - (weatherTotalWidth / 2);
-                    // calculate Y-axis position of bitmap icon
-                    float bitmapY = y + mLineHeightNoSpacing - 5;
-                    // draw icon
-                    canvas.drawBitmap(mWeatherIcon, x, bitmapY, null);
-                    // move X-axis starting point after the icon
-                    x+= (float) mWeatherIcon.getWidth();
-                    // calculate Y-axis position for temperature text
-                    y+= mLineHeight + (mLineHeightNoSpacing / 2) - 10;
-                    // draw temperatures
-                    canvas.drawText(tempHigh, x, y, mTempHighPaint);
-                    x+= mTempHighPaint.measureText(tempHigh);
-                    canvas.drawText(tempLow, x, y, mTempLowPaint);
-                }
+            mStaticLayerValid = true;
+            mStaticLayerTimeWidth = mTimeWidth;
+            mStats.layerDrawn();
+        }
+
+        /**
+         * Formats the time of {@link #mCalendar}, like "9:05", into {@link #mTimeChars} and
+         * measures it, if the minute changed since the last time.
+         */
+        private void updateTimeText() {
+            int hour = mCalendar.get(Calendar.HOUR_OF_DAY);
+            int minute = mCalendar.get(Calendar.MINUTE);
+            int key = hour * 60 + minute;
+            if (key == mTimeKey) return;
+            mTimeKey = key;
+
+            int length = 0;
+            if (hour >= 10) {
+                mTimeChars[length++] = (char) ('0' + hour / 10);
             }
+            mTimeChars[length++] = (char) ('0' + hour % 10);
+            mTimeChars[length++] = ':';
+            mTimeChars[length++] = (char) ('0' + minute / 10);
+            mTimeChars[length++] = (char) ('0' + minute % 10);
+            mTimeLength = length;
+            mTimeWidth = mTimePaint.measureText(mTimeChars, 0, length);
+        }
+
+        /**
+         * Formats and measures the date shown, if the day or the forecast day shown changed
+         * since the last time.
+         *
+         * @return true if the date shown changed
+         */
+        private boolean updateDateText() {
+            long key = mShownDayOffset == 0
+                    ? mCalendar.get(Calendar.YEAR) * 1000 + mCalendar.get(Calendar.DAY_OF_YEAR)
+                    : getShownDay();
+            if (key == mDateKey && mShownDayOffset == mDateOffset) return false;
+            mDateKey = key;
+            mDateOffset = mShownDayOffset;
+
+            String date = mShownDayOffset == 0
+                    ? mTodayDateFormat.format(mCalendar.getTime())
+                    : mForecastDateFormat.format(getShownDay());
+            mDateText = date.toUpperCase();
+            mDateWidth = mDatePaint.measureText(mDateText);
+            return true;
+        }
+
+        /**
+         * Makes the next frame format and measure its text again, after a change of time zone
+         * or text size.
+         */
+        private void invalidateTextCaches() {
+            mTimeKey = -1;
+            mDateKey = -1;
+            mTempHighWidth = mTempHighPaint.measureText(tempHigh);
+            mTempLowWidth = mTempLowPaint.measureText(tempLow);
         }
 
         /**
@@ -394,7 +550,8 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
-            invalidate();
+            mStats.timerWokeUp();
+            invalidate(WatchFaceStats.CAUSE_TIMER);
             if (shouldTimerBeRunning()) {
                 long timeMs = System.currentTimeMillis();
                 long delayMs = INTERACTIVE_UPDATE_RATE_MS
@@ -405,70 +562,126 @@ public class SunshineWatchFaceService extends CanvasWatchFaceService {
 
         @Override
         public void onConnected(@Nullable Bundle bundle) {
+            mStats.connected();
             Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
+            // the days published while we weren't listening
+            Uri forecastUri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(FORECAST_PATH_PREFIX)
+                    .build();
+            Wearable.DataApi.getDataItems(mGoogleApiClient, forecastUri, DataApi.FILTER_PREFIX)
+                    .setResultCallback(mForecastItemsCallback);
         }
 
         @Override
         public void onConnectionSuspended(int i) {
-
+            mStats.connectionSuspended();
         }
 
         @Override
         public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
-
+            mStats.connectionFailed();
         }
 
         // Getting the weather data from the mobile app.
         @Override
         public void onDataChanged(DataEventBuffer dataEventBuffer) {
             Log.v(TAG, "onDataChanged: " + dataEventBuffer);
+            boolean changed = false;
             for (DataEvent dataEvent : dataEventBuffer){
+                DataItem dataItem = dataEvent.getDataItem();
+                String path = dataItem.getUri().getPath();
                 if (dataEvent.getType() == DataEvent.TYPE_CHANGED){
-                    DataMap dataMap = DataMapItem.fromDataItem(dataEvent.getDataItem()).getDataMap();
-                    String path = dataEvent.getDataItem().getUri().getPath();
-                    if (path.equals("/weather-data")){
-                        Log.v(TAG, "sending weather data for drawing on canvas: " + dataMap);
-                        updateUiWeatherData(dataMap.getString("high"), dataMap.getString("low"), dataMap.getAsset("icon"));
-                    }
+                    changed |= putForecastDay(path, dataItem.getData());
+                } else if (dataEvent.getType() == DataEvent.TYPE_DELETED){
+                    changed |= removeForecastDay(path);
                 }
             }
+            if (changed) {
+                updateUiWeatherData(WatchFaceStats.CAUSE_DATA);
+            }
         }
 
-        public void updateUiWeatherData(String high, String low, Asset icon){
-            // change the high, low and icon values of the canvas and then invalidate
-            // invalidate() will happen once the bitmap load is finished within the aync task called.
-            tempHigh = high;
-            tempLow = low;
-            new LoadBitmapAsyncTask().execute(icon);
+        /**
+         * @return true if the item was a forecast day this watch face can read, now stored
+         */
+        private boolean putForecastDay(String path, byte[] data) {
+            long date = getForecastDate(path);
+            if (date == -1) return false;
+            WeatherPayload weather = WeatherPayload.decode(data);
+            if (weather == null) return false;
+            mForecast.put(date, weather);
+            return true;
         }
 
-        // task to get the bitmap from the assets
-        private class LoadBitmapAsyncTask extends AsyncTask<Asset, Void, Bitmap>{
-            @Override
-            protected Bitmap doInBackground(Asset... params) {
+        /**
+         * @return true if the item was a forecast day, now removed
+         */
+        private boolean removeForecastDay(String path) {
+            long date = getForecastDate(path);
+            return date != -1 && mForecast.remove(date) != null;
+        }
 
-                if (params.length > 0){
-                    Asset asset = params[0];
-                    InputStream assetInputStream = Wearable.DataApi.getFdForAsset(mGoogleApiClient, asset).await().getInputStream();
-                    if (assetInputStream == null){
-                        return null;
-                    }
-                    return BitmapFactory.decodeStream(assetInputStream);
-                }else {
-                    Log.e(TAG, "Asset must be non-null");
-                    return null;
-                }
+        /**
+         * @return The UTC date of the forecast day at this path, or -1 if it isn't one
+         */
+        private long getForecastDate(String path) {
+            if (path == null || !path.startsWith(FORECAST_PATH_PREFIX)) return -1;
+            try {
+                return Long.parseLong(path.substring(FORECAST_PATH_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring " + path);
+                return -1;
             }
+        }
 
-            @Override
-            protected void onPostExecute(Bitmap bitmap) {
-                if (bitmap != null){
-                    Log.d(TAG, "Setting Weather Icon..");
-                    mWeatherIcon = bitmap;
-                    invalidate();
-                    Log.v(TAG, "UI UPDATED");
-                }
+        /**
+         * @return The UTC date of the day whose weather is shown
+         */
+        private long getShownDay() {
+            long today = (System.currentTimeMillis() / DAY_IN_MILLIS) * DAY_IN_MILLIS;
+            return today + mShownDayOffset * DAY_IN_MILLIS;
+        }
+
+        /**
+         * @param cause What changed the weather to show, one of the WatchFaceStats causes
+         */
+        public void updateUiWeatherData(int cause){
+            // drop the days that have passed. a day after today the phone didn't send is
+            // skipped, and after the last day the watch goes back to today
+            long today = (System.currentTimeMillis() / DAY_IN_MILLIS) * DAY_IN_MILLIS;
+            mForecast.headMap(today).clear();
+            if (mShownDayOffset != 0) {
+                Long shownDay = mForecast.ceilingKey(getShownDay());
+                mShownDayOffset = shownDay == null
+                        ? 0 : (int) ((shownDay - today) / DAY_IN_MILLIS);
             }
+
+            WeatherPayload weather = mForecast.get(getShownDay());
+            mStaticLayerValid = false;
+            if (weather == null) {
+                // nothing to show for today, rather than the weather of another day
+                mWeatherIcon = null;
+            } else {
+                // change the high, low and icon values of the canvas and then invalidate.
+                // the icon is one of our own drawables, so there is nothing to fetch from the phone.
+                tempHigh = weather.formatHigh() + " ";
+                tempLow = weather.formatLow();
+                mTempHighWidth = mTempHighPaint.measureText(tempHigh);
+                mTempLowWidth = mTempLowPaint.measureText(tempLow);
+                mWeatherIcon = WeatherIconCache.get(getResources(), weather.getIconResId(), WEATHER_ICON_SIZE);
+            }
+            invalidate(cause);
+        }
+
+        /**
+         * Invalidates the watch face, counting what asked for the frame.
+         *
+         * @param cause One of the WatchFaceStats causes
+         */
+        private void invalidate(int cause) {
+            mStats.invalidated(cause);
+            invalidate();
         }
     }
 }
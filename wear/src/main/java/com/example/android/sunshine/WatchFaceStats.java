@@ -0,0 +1,145 @@
+package com.example.android.sunshine;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * What the watch face costs: how long frames take to draw, what asked for them, how often the
+ * interactive timer wakes up, and how often the connection to the phone is made again. Recording
+ * only increments counters, so it can be done from onDraw without allocating. The counts since
+ * the last summary are logged at most every {@link #LOG_INTERVAL_MILLIS}, or when the watch face
+ * is hidden, to tune the update rate against.
+ */
+final class WatchFaceStats {
+
+    private static final String TAG = "WatchFaceStats";
+
+    private static final long LOG_INTERVAL_MILLIS = 10 * 60 * 1000;
+
+    /* What invalidated the watch face */
+    static final int CAUSE_TIME_TICK = 0;
+    static final int CAUSE_TIMER = 1;
+    static final int CAUSE_DATA = 2;
+    static final int CAUSE_TAP = 3;
+    static final int CAUSE_AMBIENT = 4;
+    static final int CAUSE_VISIBILITY = 5;
+    static final int CAUSE_TIME_ZONE = 6;
+
+    private static final String[] CAUSE_NAMES = {
+            "time tick", "timer", "data", "tap", "ambient", "visibility", "time zone"
+    };
+
+    /* Upper bounds of the draw duration buckets, in microseconds; the last bucket is unbounded */
+    private static final int[] DRAW_BUCKET_MICROS = {250, 500, 1000, 2000, 4000, 8000, 16000};
+
+    private final int[] mInvalidations = new int[CAUSE_NAMES.length];
+    private final int[] mDrawBuckets = new int[DRAW_BUCKET_MICROS.length + 1];
+    private int mDraws;
+    private long mDrawNanos;
+    private long mMaxDrawNanos;
+    private int mLayerDraws;
+    private int mTimerWakeups;
+    private int mConnects;
+    /* Connects after the first one of this engine */
+    private int mReconnects;
+    private boolean mEverConnected;
+    private int mSuspensions;
+    private int mConnectionFailures;
+    private long mSinceMillis = SystemClock.elapsedRealtime();
+
+    void invalidated(int cause) {
+        mInvalidations[cause]++;
+    }
+
+    void drawn(long nanos) {
+        mDraws++;
+        mDrawNanos += nanos;
+        mMaxDrawNanos = Math.max(mMaxDrawNanos, nanos);
+
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < DRAW_BUCKET_MICROS.length && micros >= DRAW_BUCKET_MICROS[bucket]) {
+            bucket++;
+        }
+        mDrawBuckets[bucket]++;
+    }
+
+    void layerDrawn() {
+        mLayerDraws++;
+    }
+
+    void timerWokeUp() {
+        mTimerWakeups++;
+    }
+
+    void connected() {
+        mConnects++;
+        if (mEverConnected) {
+            mReconnects++;
+        }
+        mEverConnected = true;
+    }
+
+    void connectionSuspended() {
+        mSuspensions++;
+    }
+
+    void connectionFailed() {
+        mConnectionFailures++;
+    }
+
+    /**
+     * Logs the summary if the last one was logged long enough ago.
+     */
+    void logIfDue() {
+        if (SystemClock.elapsedRealtime() - mSinceMillis >= LOG_INTERVAL_MILLIS) {
+            log();
+        }
+    }
+
+    /**
+     * Logs the counts since the last summary, and starts counting again.
+     */
+    void log() {
+        long now = SystemClock.elapsedRealtime();
+        if (mDraws == 0 && mTimerWakeups == 0 && mConnects == 0) {
+            mSinceMillis = now;
+            return;
+        }
+
+        StringBuilder summary = new StringBuilder("Last ")
+                .append((now - mSinceMillis) / 1000).append("s, draws: ").append(mDraws)
+                .append(" (layer: ").append(mLayerDraws)
+                .append("), mean: ").append(mDraws == 0 ? 0 : mDrawNanos / mDraws / 1000)
+                .append("us, max: ").append(mMaxDrawNanos / 1000).append("us, histogram:");
+        for (int i = 0; i < mDrawBuckets.length; i++) {
+            summary.append(i < DRAW_BUCKET_MICROS.length ? " <" + DRAW_BUCKET_MICROS[i] : " more")
+                    .append(": ").append(mDrawBuckets[i]);
+        }
+        summary.append(", invalidations:");
+        for (int i = 0; i < mInvalidations.length; i++) {
+            summary.append(' ').append(CAUSE_NAMES[i]).append(": ").append(mInvalidations[i]);
+        }
+        summary.append(", timer wakeups: ").append(mTimerWakeups)
+                .append(", connects: ").append(mConnects)
+                .append(" (reconnects: ").append(mReconnects)
+                .append("), suspensions: ").append(mSuspensions)
+                .append(", connection failures: ").append(mConnectionFailures);
+        Log.i(TAG, summary.toString());
+
+        Arrays.fill(mInvalidations, 0);
+        Arrays.fill(mDrawBuckets, 0);
+        mDraws = 0;
+        mDrawNanos = 0;
+        mMaxDrawNanos = 0;
+        mLayerDraws = 0;
+        mTimerWakeups = 0;
+        mConnects = 0;
+        mReconnects = 0;
+        mSuspensions = 0;
+        mConnectionFailures = 0;
+        mSinceMillis = now;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.android.sunshine;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+/**
+ * Weather icons decoded and scaled for the watch face, keyed by drawable and size. The same
+ * condition comes back day after day, so an update with a condition seen before costs neither
+ * a decode nor a scale. There are only eight icons, so a few entries cover every condition at
+ * the size in use.
+ */
+final class WeatherIconCache {
+
+    private static final int MAX_ENTRIES = 8;
+
+    private static final LruCache<Long, Bitmap> sIcons = new LruCache<>(MAX_ENTRIES);
+
+    private WeatherIconCache() {
+    }
+
+    /**
+     * @param resources Used to decode the drawable
+     * @param resId     The icon's drawable
+     * @param sizePx    The width and height to scale it to
+     * @return The scaled icon, shared with other callers, so it must not be modified
+     */
+    static Bitmap get(Resources resources, int resId, int sizePx) {
+        Long key = ((long) resId << 32) | sizePx;
+        Bitmap icon = sIcons.get(key);
+        if (icon == null) {
+            Bitmap decoded = BitmapFactory.decodeResource(resources, resId);
+            icon = Bitmap.createScaledBitmap(decoded, sizePx, sizePx, true);
+            if (icon != decoded) {
+                decoded.recycle();
+            }
+            sIcons.put(key, icon);
+        }
+        return icon;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.android.sunshine;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A day of weather as sent by the phone, decoded from the few bytes of the data item. The phone
+ * encodes it in its WearWeatherPayload class; both must change together.
+ * <p>
+ * The icon is looked up in the watch's own drawables. The temperatures arrive already rounded,
+ * in the unit the user chose on the phone, exactly as the phone displays them, so they are only
+ * given their degree sign here.
+ */
+final class WeatherPayload {
+
+    private static final String TAG = "WeatherPayload";
+
+    private static final byte VERSION = 2;
+    private static final int SIZE = 8;
+
+    final int conditionId;
+    final int highDegrees;
+    final int lowDegrees;
+
+    private WeatherPayload(int conditionId, int highDegrees, int lowDegrees) {
+        this.conditionId = conditionId;
+        this.highDegrees = highDegrees;
+        this.lowDegrees = lowDegrees;
+    }
+
+    /**
+     * @param data The data of the item sent by the phone
+     * @return The weather, or null if the data isn't a version this watch face understands
+     */
+    static WeatherPayload decode(byte[] data) {
+        if (data == null || data.length < SIZE || data[0] != VERSION) {
+            Log.w(TAG, "Ignoring a payload this watch face can't read");
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        /* The version, checked above, and the flags, which only matter to the phone */
+        buffer.get();
+        buffer.get();
+        int conditionId = buffer.getShort();
+        int high = buffer.getShort();
+        int low = buffer.getShort();
+        return new WeatherPayload(conditionId, high, low);
+    }
+
+    /**
+     * @return The high temperature, in the user's unit, like "21°"
+     */
+    String formatHigh() {
+        return highDegrees + "°";
+    }
+
+    /**
+     * @return The low temperature, in the user's unit, like "12°"
+     */
+    String formatLow() {
+        return lowDegrees + "°";
+    }
+
+    /**
+     * Same mapping as the small art of the phone app.
+     *
+     * @return The drawable for the condition
+     */
+    int getIconResId() {
+        int id = conditionId;
+        if (id >= 200 && id <= 232) {
+            return R.drawable.ic_storm;
+        } else if (id >= 300 && id <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (id >= 500 && id <= 504) {
+            return R.drawable.ic_rain;
+        } else if (id == 511) {
+            return R.drawable.ic_snow;
+        } else if (id >= 520 && id <= 531) {
+            return R.drawable.ic_rain;
+        } else if (id >= 600 && id <= 622) {
+            return R.drawable.ic_snow;
+        } else if (id >= 701 && id <= 761) {
+            return R.drawable.ic_fog;
+        } else if (id == 771 || id == 781) {
+            return R.drawable.ic_storm;
+        } else if (id == 800) {
+            return R.drawable.ic_clear;
+        } else if (id == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (id >= 802 && id <= 804) {
+            return R.drawable.ic_cloudy;
+        } else if (id >= 900 && id <= 906) {
+            return R.drawable.ic_storm;
+        } else if (id >= 958 && id <= 962) {
+            return R.drawable.ic_storm;
+        } else if (id >= 951 && id <= 957) {
+            return R.drawable.ic_clear;
+        }
+
+        Log.e(TAG, "Unknown Weather: " + id);
+        return R.drawable.ic_storm;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Decodes the payloads the phone app's TestWearForecastPublisher expects its WearWeatherPayload
+ * to encode, so the two ends of the wear bridge agree on the format.
+ */
+public class TestWeatherPayload {
+
+    @Test
+    public void testDecodesCelsius() {
+        /* 800, 21.45°C and 12°C */
+        WeatherPayload weather = WeatherPayload.decode(new byte[]{2, 1, 0x03, 0x20, 0, 21, 0, 12});
+        assertEquals("Unexpected condition", 800, weather.conditionId);
+        assertEquals("Unexpected high", "21°", weather.formatHigh());
+        assertEquals("Unexpected low", "12°", weather.formatLow());
+        assertEquals("Unexpected icon", R.drawable.ic_clear, weather.getIconResId());
+    }
+
+    @Test
+    public void testDecodesFahrenheit() {
+        /* The same day, in Fahrenheit */
+        WeatherPayload weather = WeatherPayload.decode(new byte[]{2, 0, 0x03, 0x20, 0, 71, 0, 54});
+        assertEquals("Unexpected high", "71°", weather.formatHigh());
+        assertEquals("Unexpected low", "54°", weather.formatLow());
+    }
+
+    @Test
+    public void testDecodesNegativeTemperatures() {
+        /* 600, -2.5°C and -5.5°C */
+        WeatherPayload weather =
+                WeatherPayload.decode(new byte[]{2, 1, 0x02, 0x58, -1, -3, -1, -6});
+        assertEquals("Unexpected high", "-3°", weather.formatHigh());
+        assertEquals("Unexpected low", "-6°", weather.formatLow());
+        assertEquals("Unexpected icon", R.drawable.ic_snow, weather.getIconResId());
+    }
+}